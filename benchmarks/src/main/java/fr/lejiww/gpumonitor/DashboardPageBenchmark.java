@@ -0,0 +1,34 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Preparing the dashboard and fleet pages: encoding, compressing and hashing the HTML. The
+ * HTML itself is a constant expression, so generating it costs nothing. Both pages are
+ * prepared once at startup; {@code RequestBenchmark.dashboard} measures serving them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DashboardPageBenchmark {
+
+    @Benchmark
+    public DashboardPage dashboard() {
+        return new DashboardPage(DashboardPage.generateHtmlPage());
+    }
+
+    @Benchmark
+    public DashboardPage fleet() {
+        return new DashboardPage(FleetPage.generateHtmlPage());
+    }
+}
@@ -0,0 +1,89 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every form a snapshot is served in, for an 8 GPU node with two Ollama models loaded. The
+ * JSON of a {@link MetricsSnapshot} is built once, in its constructor, so {@link #snapshotJson}
+ * measures construction. {@link PrometheusExporter} keeps the last rendering per snapshot
+ * sequence, so {@link #prometheusRender} alternates between two snapshots to defeat it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+    private List<GpuSample> gpus;
+    private SystemSample system;
+    private OllamaSample ollama;
+    private MetricsSnapshot snapshot;
+    private MetricsSnapshot nextSnapshot;
+    private PrometheusExporter prometheus;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        gpus = Fixtures.gpus();
+        system = Fixtures.system();
+        ollama = Fixtures.ollama();
+        snapshot = Fixtures.snapshot(1);
+        nextSnapshot = Fixtures.snapshot(2);
+        prometheus = new PrometheusExporter();
+    }
+
+    @Benchmark
+    public MetricsSnapshot snapshotJson() {
+        return new MetricsSnapshot(++sequence, 1792300000000L, gpus, system, ollama);
+    }
+
+    @Benchmark
+    public String systemJson() {
+        return system.toJson(SystemSample.FIELDS);
+    }
+
+    @Benchmark
+    public String gpuJson() {
+        return gpus.get(0).toJson();
+    }
+
+    @Benchmark
+    public byte[] sseEvent() {
+        return SnapshotBroadcaster.encodeEvent(snapshot);
+    }
+
+    @Benchmark
+    public int binarySnapshot() {
+        ByteBuffer buffer = BinaryEncoder.encodeSnapshot(snapshot);
+        int length = buffer.limit();
+        BinaryEncoder.release(buffer);
+        return length;
+    }
+
+    @Benchmark
+    public byte[] prometheusRender() {
+        MetricsSnapshot current = snapshot;
+        snapshot = nextSnapshot;
+        nextSnapshot = current;
+        return prometheus.render(current, false);
+    }
+
+    @Benchmark
+    public byte[] prometheusCached() {
+        return prometheus.render(snapshot, false);
+    }
+}
@@ -0,0 +1,75 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Inputs shared by the benchmarks. Files come from {@code tools/nvidia-smi-stub}, whose
+ * location the {@code jmh} task passes to every forked JVM as {@code gpumonitor.bench.fixtures}.
+ */
+final class Fixtures {
+    static final int GPU_COUNT = 8;
+
+    private Fixtures() {
+    }
+
+    static Path directory() {
+        return Paths.get(System.getProperty("gpumonitor.bench.fixtures", "tools/nvidia-smi-stub")).toAbsolutePath();
+    }
+
+    static Path procRoot() {
+        return directory().resolve("proc");
+    }
+
+    static String nvidiaSmi() {
+        return directory().resolve("nvidia-smi").toString();
+    }
+
+    /** What {@code nvidia-smi --query-gpu=... --format=csv,noheader,nounits} prints for an 8 GPU node. */
+    static String nvidiaSmiOutput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < GPU_COUNT; i++) {
+            sb.append(String.format(Locale.ROOT,
+                "%d, GPU-5d1c2b3a-0000-4000-8000-%012d, NVIDIA H100 80GB HBM3, %d, %d, %d, 81559, %.2f, 700.00%n",
+                i, i, 40 + i * 3, 10 * i, 20000 + 6000 * i, 120.5 + 61.25 * i));
+        }
+        return sb.toString();
+    }
+
+    static List<GpuSample> gpus() {
+        List<GpuSample> gpus = new ArrayList<>(GPU_COUNT);
+        for (String line : nvidiaSmiOutput().split("\n")) {
+            gpus.add(GpuSample.parse(line));
+        }
+        return gpus;
+    }
+
+    static SystemSample system() {
+        double[] cores = new double[32];
+        for (int core = 0; core < cores.length; core++) {
+            cores[core] = core * 3.1 % 100;
+        }
+        return new SystemSample(37.5, cores, 41.2, 62.5, 65.9, 812, 1863, 43.6, 58,
+            "1.25 0.98 0.75", "Ubuntu 22.04.4 LTS", "gpu-box-1", "100h 0m", cores.length, null);
+    }
+
+    static OllamaSample ollama() {
+        List<OllamaSample.LoadedModel> models = List.of(
+            new OllamaSample.LoadedModel("llama3:70b", "sha256:6a0746a1ec1a", "70.6B", "Q4_K_M",
+                42520413916L, 42520413916L, "2026-10-18T12:30:00Z",
+                Map.of("GPU-5d1c2b3a-0000-4000-8000-000000000000", 20480L,
+                       "GPU-5d1c2b3a-0000-4000-8000-000000000001", 20224L)),
+            new OllamaSample.LoadedModel("nomic-embed-text:latest", "sha256:0a109f422b47", "137M", "F16",
+                621000000L, 621000000L, "2026-10-18T12:05:00Z",
+                Map.of("GPU-5d1c2b3a-0000-4000-8000-000000000002", 720L)));
+        return new OllamaSample("active", true, models, 12, 98000000000L);
+    }
+
+    static MetricsSnapshot snapshot(long sequence) {
+        return new MetricsSnapshot(sequence, 1792300000000L + sequence * 2000, gpus(), system(), ollama());
+    }
+}
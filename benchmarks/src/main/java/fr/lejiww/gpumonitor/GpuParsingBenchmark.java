@@ -0,0 +1,63 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The in-process half of {@code MetricsSampler.executeNvidiaSmiCommand}: reading the CSV that
+ * nvidia-smi prints for 8 GPUs and turning it into {@link GpuSample}s. Forking nvidia-smi
+ * itself is left out, it is measured by the request path and load tests instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GpuParsingBenchmark {
+    private byte[] output;
+    private String line;
+
+    @Setup
+    public void setUp() {
+        output = Fixtures.nvidiaSmiOutput().getBytes(StandardCharsets.UTF_8);
+        line = Fixtures.nvidiaSmiOutput().split("\n")[0];
+    }
+
+    @Benchmark
+    public GpuSample parseLine() {
+        return GpuSample.parse(line);
+    }
+
+    @Benchmark
+    public List<GpuSample> parseOutput() throws IOException {
+        List<GpuSample> samples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(output)))) {
+            String next;
+            while ((next = reader.readLine()) != null) {
+                GpuSample sample = GpuSample.parse(next);
+                if (sample != null) {
+                    samples.add(sample);
+                }
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,221 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end requests through {@link ClientHandler} over a loopback socket, on a kept-alive
+ * connection as the dashboard polls, and on a new connection per request. The server side
+ * is the same as in {@code thread} mode. Collection is out of the picture: the sampler takes
+ * one snapshot from the fake nvidia-smi at setup and its interval keeps it fresh for the run.
+ * The allocation figures include the client side of the exchange.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        ServerSocket serverSocket;
+        PrintStream console;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            // ClientHandler logs every connection and request to stdout
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            Path procRoot = Fixtures.procRoot();
+            String nvidiaSmi = Fixtures.nvidiaSmi();
+            GpuProcessCollector processes = new GpuProcessCollector(nvidiaSmi, procRoot, 60000);
+            OllamaCollector ollamaCollector = new OllamaCollector(URI.create("http://127.0.0.1:1"), 60000, processes);
+            MetricsSampler sampler = new MetricsSampler(3600_000L, nvidiaSmi, "exec", procRoot, null, ollamaCollector);
+            if (sampler.getSnapshot().getGpus().isEmpty()) {
+                throw new IllegalStateException("No GPU from " + nvidiaSmi + ", is python3 installed?");
+            }
+            MonitorServices services = new MonitorServices(sampler, new SnapshotBroadcaster(16, 10000), new MetricHistory(60),
+                null, new OllamaController(CommandRunner.processRunner(1000), "true"),
+                new AlertEngine(List.of(), null), null, processes);
+
+            serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        Thread handler = new Thread(new ClientHandler(socket, services));
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "benchmark-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            serverSocket.close();
+            System.setOut(console);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        Socket socket;
+        OutputStream out;
+        InputStream in;
+        int port;
+        final byte[] body = new byte[256 * 1024];
+        final Response response = new Response();
+
+        @Setup(Level.Trial)
+        public void start(Server server) throws IOException {
+            port = server.serverSocket.getLocalPort();
+            connect();
+        }
+
+        void connect() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        int get(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            readResponse(in, body, response);
+            // The server closes after gpumonitor.http.maxKeepAliveRequests, as a browser would see
+            if (response.close) {
+                socket.close();
+                connect();
+            }
+            return response.length;
+        }
+    }
+
+    static final class Response {
+        int length;
+        boolean close;
+    }
+
+    private static final byte[] UPDATE = request("/update", "");
+    private static final byte[] SYSTEM = request("/system", "");
+    private static final byte[] SYSTEM_FIELDS = request("/system?fields=cpuUsage,ramUsed", "");
+    private static final byte[] SNAPSHOT = request("/snapshot", "");
+    private static final byte[] METRICS = request("/metrics", "");
+    private static final byte[] DASHBOARD = request("/", "Accept-Encoding: gzip, deflate\r\n");
+    private static final byte[] UPDATE_CLOSE = request("/update", "Connection: close\r\n");
+
+    private static byte[] request(String target, String headers) {
+        return ("GET " + target + " HTTP/1.1\r\nHost: localhost\r\n" + headers + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public int update(Client client) throws IOException {
+        return client.get(UPDATE);
+    }
+
+    @Benchmark
+    public int system(Client client) throws IOException {
+        return client.get(SYSTEM);
+    }
+
+    @Benchmark
+    public int systemFields(Client client) throws IOException {
+        return client.get(SYSTEM_FIELDS);
+    }
+
+    @Benchmark
+    public int snapshot(Client client) throws IOException {
+        return client.get(SNAPSHOT);
+    }
+
+    @Benchmark
+    public int metrics(Client client) throws IOException {
+        return client.get(METRICS);
+    }
+
+    @Benchmark
+    public int dashboard(Client client) throws IOException {
+        return client.get(DASHBOARD);
+    }
+
+    @Benchmark
+    public int updateNewConnection(Client client) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), client.port)) {
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(UPDATE_CLOSE);
+            readResponse(new BufferedInputStream(socket.getInputStream()), client.body, client.response);
+            return client.response.length;
+        }
+    }
+
+    /** Reads one response, with its body into {@code body}. */
+    static void readResponse(InputStream in, byte[] body, Response response) throws IOException {
+        int contentLength = -1;
+        response.close = false;
+        StringBuilder line = new StringBuilder(64);
+        boolean first = true;
+        while (true) {
+            int b = in.read();
+            if (b < 0) throw new IOException("Connection closed in headers");
+            if (b != '\n') {
+                if (b != '\r') line.append((char) b);
+                continue;
+            }
+            if (line.length() == 0) break;
+            if (first) {
+                if (line.indexOf(" 200 ") < 0) throw new IOException("Unexpected status: " + line);
+                first = false;
+            } else if (line.length() > 15 && line.substring(0, 15).equalsIgnoreCase("Content-Length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            } else if (line.length() > 11 && line.substring(0, 11).equalsIgnoreCase("Connection:")) {
+                response.close = line.indexOf("close") > 0;
+            }
+            line.setLength(0);
+        }
+        if (contentLength < 0) throw new IOException("No Content-Length");
+        int read = 0;
+        while (read < contentLength) {
+            int n = in.read(body, read, contentLength - read);
+            if (n < 0) throw new IOException("Connection closed in body");
+            read += n;
+        }
+        response.length = read;
+    }
+}
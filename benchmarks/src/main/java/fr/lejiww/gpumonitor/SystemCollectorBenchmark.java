@@ -0,0 +1,94 @@
+package fr.lejiww.gpumonitor;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each collector behind {@code /system}, run against the fixture {@code /proc} and cgroup
+ * trees, and the whole collection as the sampler runs it. Disk and CPU temperature still come from the host:
+ * they are read from {@code /} and {@code /sys}, which the fixture does not replace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemCollectorBenchmark {
+    private ProcStatReader stat;
+    private ProcMeminfoReader meminfo;
+    private ProcPidReader pid;
+    private CgroupReader cgroup;
+    private MetricsSampler sampler;
+    private final Set<String> cpuAndMemory = Set.of("cpuUsage", "ramUsed");
+
+    @Setup
+    public void setUp() {
+        Path procRoot = Fixtures.procRoot();
+        stat = new ProcStatReader(procRoot);
+        meminfo = new ProcMeminfoReader(procRoot);
+        pid = new ProcPidReader(procRoot, 4242);
+        Path cgroupDir = Fixtures.directory().resolve("cgroup");
+        cgroup = new CgroupReader(cgroupDir);
+        OllamaCollector ollama = new OllamaCollector(URI.create("http://127.0.0.1:1"), 60000,
+            new GpuProcessCollector(Fixtures.nvidiaSmi(), procRoot, 60000));
+        // Never started: getSystemSample collects directly while there is no snapshot
+        sampler = new MetricsSampler(2000, Fixtures.nvidiaSmi(), "exec", procRoot, cgroupDir, ollama);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stat.close();
+        meminfo.close();
+        pid.close();
+        cgroup.close();
+    }
+
+    @Benchmark
+    public double procStat() {
+        stat.sample();
+        return stat.getUsage();
+    }
+
+    @Benchmark
+    public long procMeminfo() {
+        meminfo.sample();
+        return meminfo.getUsedKb();
+    }
+
+    @Benchmark
+    public long procPid() {
+        pid.sample();
+        return pid.getCpuTicks() + pid.getRssKb();
+    }
+
+    @Benchmark
+    public long cgroup() {
+        cgroup.sample();
+        return cgroup.getMemoryWorkingSetBytes();
+    }
+
+    @Benchmark
+    public SystemSample cpuAndMemoryFields() {
+        return sampler.getSystemSample(cpuAndMemory);
+    }
+
+    @Benchmark
+    public SystemSample allFields() {
+        return sampler.getSystemSample(null);
+    }
+}
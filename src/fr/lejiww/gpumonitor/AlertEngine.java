@@ -0,0 +1,203 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates {@link AlertRule}s against every snapshot as it is published. Each rule keeps a
+ * few fields of state per card (or for the host): when the condition started to hold and
+ * whether the alert is firing. An alert fires once the condition has held for the rule's
+ * duration, resolves once the value is back past the clear value, and notifies only on
+ * those two transitions.
+ *
+ * <p>A snapshot without any GPU is a failed reading, not a node without cards: GPU rules skip
+ * it. A card missing from a snapshot that still reports other cards is gone once it has been
+ * missing for the rule's duration; its alerts then resolve and its state is dropped.
+ */
+public final class AlertEngine {
+    private final List<AlertRule> rules;
+    // Per rule: the host state, or the state of each card indexed by GPU index (null if unseen)
+    private final State[] hostStates;
+    private final State[][] gpuStates;
+    private final WebhookNotifier webhook;
+    private long evaluations;
+
+    /**
+     * @param webhook where notifications are posted, or {@code null} to only log them
+     */
+    AlertEngine(List<AlertRule> rules, WebhookNotifier webhook) {
+        this.rules = List.copyOf(rules);
+        this.hostStates = new State[rules.size()];
+        this.gpuStates = new State[rules.size()][];
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).isPerGpu()) {
+                gpuStates[i] = new State[0];
+            } else {
+                hostStates[i] = new State();
+            }
+        }
+        this.webhook = webhook;
+    }
+
+    /**
+     * Parses rules separated by {@code ;} or new lines. Blank lines and lines starting with
+     * {@code #} are skipped, and so are invalid rules, after logging why.
+     */
+    static List<AlertRule> parseRules(String text) {
+        List<AlertRule> rules = new ArrayList<>();
+        for (String line : text.split("[;\n]")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            try {
+                rules.add(AlertRule.parse(trimmed));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring alert rule: " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    public void start() {
+        if (webhook != null) {
+            webhook.start();
+        }
+    }
+
+    public synchronized void evaluate(MetricsSnapshot snapshot) {
+        long evaluation = ++evaluations;
+        for (int i = 0; i < rules.size(); i++) {
+            AlertRule rule = rules.get(i);
+            if (!rule.isPerGpu()) {
+                update(rule, hostStates[i], rule.valueOf(snapshot.getSystem()), null, snapshot);
+                continue;
+            }
+            if (snapshot.getGpus().isEmpty()) continue;
+            State[] states = gpuStates[i];
+            for (GpuSample gpu : snapshot.getGpus()) {
+                int index = gpu.getIndex();
+                if (index < 0) continue;
+                if (index >= states.length) {
+                    states = Arrays.copyOf(states, index + 1);
+                    gpuStates[i] = states;
+                }
+                State state = states[index];
+                if (state == null) {
+                    state = new State();
+                    states[index] = state;
+                }
+                state.seen = evaluation;
+                state.missingSince = -1;
+                state.gpu = gpu;
+                update(rule, state, rule.valueOf(gpu), gpu, snapshot);
+            }
+            long now = snapshot.getTimestamp();
+            for (int index = 0; index < states.length; index++) {
+                State state = states[index];
+                if (state == null || state.seen == evaluation) continue;
+                if (state.missingSince < 0) {
+                    state.missingSince = now;
+                }
+                if (now - state.missingSince < rule.getForMillis()) continue;
+                if (state.firing) {
+                    state.firing = false;
+                    notify("resolved", rule, state, state.gpu, snapshot);
+                }
+                states[index] = null;
+            }
+        }
+    }
+
+    private void update(AlertRule rule, State state, double value, GpuSample gpu, MetricsSnapshot snapshot) {
+        if (Double.isNaN(value)) return;
+        long now = snapshot.getTimestamp();
+        state.value = value;
+        if (!state.firing) {
+            if (!rule.breaches(value)) {
+                state.pendingSince = -1;
+                return;
+            }
+            if (state.pendingSince < 0) {
+                state.pendingSince = now;
+            }
+            if (now - state.pendingSince >= rule.getForMillis()) {
+                state.firing = true;
+                notify("firing", rule, state, gpu, snapshot);
+            }
+        } else if (rule.clears(value)) {
+            state.firing = false;
+            notify("resolved", rule, state, gpu, snapshot);
+            state.pendingSince = -1;
+        }
+    }
+
+    private void notify(String status, AlertRule rule, State state, GpuSample gpu, MetricsSnapshot snapshot) {
+        String target = target(gpu);
+        System.out.println("=== ALERT " + status + ": " + rule.getText() + " on " + target
+            + " (" + GpuSample.formatValue(state.value) + ")"
+            + (gpu != null && state.seen != evaluations ? ", GPU no longer reported" : "") + " ===");
+        if (webhook == null) return;
+
+        StringBuilder sb = new StringBuilder(384);
+        sb.append("{\"status\":").append(Json.quote(status))
+          .append(",\"rule\":").append(Json.quote(rule.getText()))
+          .append(",\"target\":").append(Json.quote(target))
+          .append(",\"hostname\":").append(Json.quote(snapshot.getSystem().getHostname()));
+        if (gpu != null) {
+            sb.append(",\"gpu\":{\"index\":").append(gpu.getIndex())
+              .append(",\"uuid\":").append(Json.quote(gpu.getUuid()))
+              .append(",\"name\":").append(Json.quote(gpu.getName())).append('}');
+        }
+        sb.append(",\"value\":").append(GpuSample.formatValue(state.value))
+          .append(",\"threshold\":").append(GpuSample.formatValue(rule.getThreshold()))
+          .append(",\"since\":").append(state.pendingSince)
+          .append(",\"timestamp\":").append(snapshot.getTimestamp())
+          .append('}');
+        if (!webhook.offer(sb.toString())) {
+            System.err.println("Alert webhook queue full, dropped " + status + " notification for " + rule.getText());
+        }
+    }
+
+    /** Rules, alerts currently firing and webhook delivery counts, for {@code /alerts}. */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"rules\":[");
+        for (int i = 0; i < rules.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(rules.get(i).toJson());
+        }
+        sb.append("],\"firing\":[");
+        boolean first = true;
+        for (int i = 0; i < rules.size(); i++) {
+            State[] states = rules.get(i).isPerGpu() ? gpuStates[i] : new State[] {hostStates[i]};
+            for (State state : states) {
+                if (state == null || !state.firing) continue;
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"rule\":").append(Json.quote(rules.get(i).getText()))
+                  .append(",\"target\":").append(Json.quote(target(state.gpu)))
+                  .append(",\"value\":").append(GpuSample.formatValue(state.value))
+                  .append(",\"since\":").append(state.pendingSince)
+                  .append('}');
+            }
+        }
+        sb.append("],\"webhook\":").append(webhook == null ? "null" : webhook.toJson()).append('}');
+        return sb.toString();
+    }
+
+    /** {@code gpu<index>}, or {@code host} for host rules; only built to report an alert. */
+    private static String target(GpuSample gpu) {
+        return gpu == null ? "host" : "gpu" + gpu.getIndex();
+    }
+
+    private static final class State {
+        long pendingSince = -1;
+        boolean firing;
+        double value;
+        // Last reading of the card, the evaluation it was seen in and since when it has been
+        // missing (-1 while reported); unused for host rules
+        GpuSample gpu;
+        long seen;
+        long missingSince = -1;
+    }
+}
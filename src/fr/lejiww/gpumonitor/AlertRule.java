@@ -0,0 +1,167 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One alert condition, parsed from text such as {@code gpu.temp > 85 for 30s} or
+ * {@code gpu.vram > 95%}:
+ *
+ * <pre>
+ * &lt;metric&gt; &lt;&gt; or &lt;&gt; &lt;threshold&gt;[%] [for &lt;duration&gt;] [clear &lt;value&gt;[%]]
+ * </pre>
+ *
+ * GPU metrics ({@code gpu.temp}, {@code gpu.util}, {@code gpu.vram}, {@code gpu.power}) are
+ * evaluated on every card, host metrics ({@code cpu}, {@code cpu.temp}, {@code ram},
+ * {@code disk}) once. A {@code %} threshold on {@code gpu.vram}, {@code gpu.power}, {@code ram}
+ * or {@code disk} is a share of the total or limit rather than MiB, W or GB. The alert clears
+ * once the value is back past {@code clear}, by default 5% of the threshold on the safe side.
+ */
+final class AlertRule {
+    private static final Pattern SYNTAX = Pattern.compile(
+        "\\s*([a-z.]+)\\s*([<>])\\s*(-?[0-9.]+)\\s*(%?)"
+            + "(?:\\s+for\\s+([0-9]+)\\s*(ms|s|m|h)?)?"
+            + "(?:\\s+clear\\s+(-?[0-9.]+)\\s*%?)?\\s*");
+
+    enum Metric {
+        GPU_TEMP("gpu.temp", true, false),
+        GPU_UTIL("gpu.util", true, false),
+        GPU_VRAM("gpu.vram", true, true),
+        GPU_POWER("gpu.power", true, true),
+        CPU("cpu", false, false),
+        CPU_TEMP("cpu.temp", false, false),
+        RAM("ram", false, true),
+        DISK("disk", false, true);
+
+        final String name;
+        final boolean perGpu;
+        final boolean hasCapacity;
+
+        Metric(String name, boolean perGpu, boolean hasCapacity) {
+            this.name = name;
+            this.perGpu = perGpu;
+            this.hasCapacity = hasCapacity;
+        }
+
+        static Metric of(String name) {
+            for (Metric metric : values()) {
+                if (metric.name.equals(name)) return metric;
+            }
+            return null;
+        }
+    }
+
+    private final String text;
+    private final Metric metric;
+    private final boolean above;
+    private final double threshold;
+    private final double clearAt;
+    private final boolean percent;
+    private final long forMillis;
+
+    private AlertRule(String text, Metric metric, boolean above, double threshold, double clearAt,
+                      boolean percent, long forMillis) {
+        this.text = text;
+        this.metric = metric;
+        this.above = above;
+        this.threshold = threshold;
+        this.clearAt = clearAt;
+        this.percent = percent;
+        this.forMillis = forMillis;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code text} is not a valid rule
+     */
+    static AlertRule parse(String text) {
+        Matcher m = SYNTAX.matcher(text.toLowerCase(Locale.ROOT));
+        if (!m.matches()) {
+            throw new IllegalArgumentException("expected \"<metric> > <threshold>[%] [for <duration>]\": " + text);
+        }
+        Metric metric = Metric.of(m.group(1));
+        if (metric == null) {
+            throw new IllegalArgumentException("unknown metric " + m.group(1) + ": " + text);
+        }
+        boolean above = ">".equals(m.group(2));
+        double threshold = Double.parseDouble(m.group(3));
+        boolean percent = !m.group(4).isEmpty() && metric.hasCapacity;
+        long forMillis = 0;
+        if (m.group(5) != null) {
+            long amount = Long.parseLong(m.group(5));
+            String unit = m.group(6) == null ? "s" : m.group(6);
+            switch (unit) {
+                case "ms": forMillis = amount; break;
+                case "m": forMillis = amount * 60_000; break;
+                case "h": forMillis = amount * 3600_000; break;
+                default: forMillis = amount * 1000;
+            }
+        }
+        double margin = Math.abs(threshold) * 0.05;
+        double clearAt = m.group(7) != null ? Double.parseDouble(m.group(7))
+            : above ? threshold - margin : threshold + margin;
+        if (above ? clearAt > threshold : clearAt < threshold) {
+            throw new IllegalArgumentException("clear value must be on the other side of the threshold: " + text);
+        }
+        return new AlertRule(text.trim(), metric, above, threshold, clearAt, percent, forMillis);
+    }
+
+    String getText() {
+        return text;
+    }
+
+    boolean isPerGpu() {
+        return metric.perGpu;
+    }
+
+    long getForMillis() {
+        return forMillis;
+    }
+
+    double getThreshold() {
+        return threshold;
+    }
+
+    /** Whether {@code value} breaches the threshold. */
+    boolean breaches(double value) {
+        return above ? value > threshold : value < threshold;
+    }
+
+    /** Whether {@code value} is back past the clear value, so a firing alert resolves. */
+    boolean clears(double value) {
+        return above ? value <= clearAt : value >= clearAt;
+    }
+
+    /** Value of the rule's metric for {@code gpu}, or NaN if the card does not report it. */
+    double valueOf(GpuSample gpu) {
+        switch (metric) {
+            case GPU_TEMP: return gpu.getTemperature();
+            case GPU_UTIL: return gpu.getUtilization();
+            case GPU_VRAM: return percent ? share(gpu.getMemoryUsed(), gpu.getMemoryTotal()) : gpu.getMemoryUsed();
+            case GPU_POWER: return percent ? share(gpu.getPowerDraw(), gpu.getPowerLimit()) : gpu.getPowerDraw();
+            default: return Double.NaN;
+        }
+    }
+
+    /** Value of the rule's metric for the host. */
+    double valueOf(SystemSample system) {
+        switch (metric) {
+            case CPU: return system.getCpuUsage();
+            case CPU_TEMP: return system.getCpuTemp();
+            case RAM: return percent ? system.getRamPercentage() : system.getRamUsed();
+            case DISK: return percent ? system.getDiskPercentage() : system.getDiskUsed();
+            default: return Double.NaN;
+        }
+    }
+
+    private static double share(double used, double total) {
+        return total > 0 ? used * 100 / total : Double.NaN;
+    }
+
+    String toJson() {
+        return "{\"rule\":" + Json.quote(text) +
+            ",\"threshold\":" + GpuSample.formatValue(threshold) +
+            ",\"clearAt\":" + GpuSample.formatValue(clearAt) +
+            ",\"forMillis\":" + forMillis + "}";
+    }
+}
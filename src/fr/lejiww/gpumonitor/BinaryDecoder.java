@@ -0,0 +1,170 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads the messages written by {@link BinaryEncoder} (served on {@code /binary}) into plain
+ * objects with primitive fields. Only the dictionary entries are decoded as strings, once per
+ * message. The class depends on nothing else in the monitor, so a collector can copy it as is.
+ */
+public final class BinaryDecoder {
+    private static final int MAGIC = 0x424d5047;
+    private static final int VERSION = 2;
+    private static final int KIND_SNAPSHOT = 1;
+    private static final int KIND_HISTORY = 2;
+    private static final int HOST = 0xffff;
+
+    private BinaryDecoder() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code buffer} does not hold a version 2 snapshot
+     */
+    public static Snapshot decodeSnapshot(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        String[] dictionary = readHeader(in, KIND_SNAPSHOT);
+        Snapshot snapshot = new Snapshot();
+        snapshot.sequence = in.getLong();
+        snapshot.timestamp = in.getLong();
+        snapshot.hostname = dictionary[Short.toUnsignedInt(in.getShort())];
+        snapshot.gpus = new Gpu[Short.toUnsignedInt(in.getShort())];
+        for (int i = 0; i < snapshot.gpus.length; i++) {
+            Gpu gpu = new Gpu();
+            gpu.index = Short.toUnsignedInt(in.getShort());
+            gpu.name = dictionary[Short.toUnsignedInt(in.getShort())];
+            gpu.uuidPrefix = dictionary[Short.toUnsignedInt(in.getShort())];
+            gpu.uuid = new UUID(in.getLong(), in.getLong());
+            gpu.temperature = in.getFloat();
+            gpu.utilization = in.getFloat();
+            gpu.memoryUsed = in.getFloat();
+            gpu.memoryTotal = in.getFloat();
+            gpu.powerDraw = in.getFloat();
+            gpu.powerLimit = in.getFloat();
+            snapshot.gpus[i] = gpu;
+        }
+        snapshot.cpuUsage = in.getFloat();
+        snapshot.cpuTemp = in.getFloat();
+        snapshot.ramUsed = in.getFloat();
+        snapshot.ramTotal = in.getFloat();
+        snapshot.ramPercentage = in.getFloat();
+        snapshot.diskUsed = in.getFloat();
+        snapshot.diskTotal = in.getFloat();
+        snapshot.diskPercentage = in.getFloat();
+        snapshot.coreUsage = new float[Short.toUnsignedInt(in.getShort())];
+        for (int core = 0; core < snapshot.coreUsage.length; core++) {
+            snapshot.coreUsage[core] = in.getFloat();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code buffer} does not hold a version 2 history message
+     */
+    public static Series[] decodeHistory(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        String[] dictionary = readHeader(in, KIND_HISTORY);
+        Series[] result = new Series[Short.toUnsignedInt(in.getShort())];
+        for (int i = 0; i < result.length; i++) {
+            Series series = new Series();
+            series.metric = dictionary[Short.toUnsignedInt(in.getShort())];
+            int gpu = Short.toUnsignedInt(in.getShort());
+            series.gpu = gpu == HOST ? -1 : gpu;
+            series.from = in.getLong();
+            series.to = in.getLong();
+            series.step = in.getLong();
+            int buckets = in.getInt();
+            series.timestamps = new long[buckets];
+            series.min = new float[buckets];
+            series.max = new float[buckets];
+            series.average = new float[buckets];
+            series.count = new int[buckets];
+            long timestamp = series.from;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                timestamp += Integer.toUnsignedLong(in.getInt());
+                series.timestamps[bucket] = timestamp;
+                series.min[bucket] = in.getFloat();
+                series.max[bucket] = in.getFloat();
+                series.average[bucket] = in.getFloat();
+                series.count[bucket] = in.getInt();
+            }
+            result[i] = series;
+        }
+        return result;
+    }
+
+    private static String[] readHeader(ByteBuffer in, int expectedKind) {
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a gpumonitor binary message");
+        }
+        int version = Byte.toUnsignedInt(in.get());
+        int kind = Byte.toUnsignedInt(in.get());
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + version);
+        }
+        if (kind != expectedKind) {
+            throw new IllegalArgumentException("Expected message kind " + expectedKind + ", got " + kind);
+        }
+        String[] dictionary = new String[Short.toUnsignedInt(in.getShort())];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+            in.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    public static final class Snapshot {
+        public long sequence;
+        public long timestamp;
+        public String hostname;
+        public Gpu[] gpus;
+        public float cpuUsage;
+        public float cpuTemp;
+        public float ramUsed;
+        public float ramTotal;
+        public float ramPercentage;
+        public float diskUsed;
+        public float diskTotal;
+        public float diskPercentage;
+        public float[] coreUsage;
+    }
+
+    public static final class Gpu {
+        public int index;
+        public String name;
+        /** {@code GPU-} or {@code MIG-}, or the whole id when {@code uuid} is nil */
+        public String uuidPrefix;
+        public UUID uuid;
+        public float temperature;
+        public float utilization;
+        public float memoryUsed;
+        public float memoryTotal;
+        public float powerDraw;
+        public float powerLimit;
+
+        /** The UUID as nvidia-smi prints it, such as {@code GPU-6e1f...}. */
+        public String uuidString() {
+            if (uuid.getMostSignificantBits() == 0 && uuid.getLeastSignificantBits() == 0) {
+                return uuidPrefix;
+            }
+            return uuidPrefix + uuid;
+        }
+    }
+
+    /** Non-empty buckets of one series; {@code gpu} is -1 for host metrics. */
+    public static final class Series {
+        public String metric;
+        public int gpu;
+        public long from;
+        public long to;
+        public long step;
+        public long[] timestamps;
+        public float[] min;
+        public float[] max;
+        public float[] average;
+        public int[] count;
+    }
+}
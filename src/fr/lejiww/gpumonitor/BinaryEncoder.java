@@ -0,0 +1,228 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compact binary form of snapshots and history ranges for {@code /binary}, read back by
+ * {@link BinaryDecoder}. All fields are fixed-width little-endian:
+ *
+ * <pre>
+ * header     u32 magic "GPMB", u8 version, u8 kind (1 snapshot, 2 history)
+ * dictionary u16 count, then count x (u16 length, UTF-8 bytes)
+ *
+ * snapshot   i64 sequence, i64 timestamp, u16 hostname id, u16 GPU count
+ *            per GPU: u16 index, u16 name id, u16 UUID prefix id, i64 UUID high, i64 UUID low,
+ *                     f32 temperature, utilization, memory used, memory total, power draw, power limit
+ *            f32 cpu usage, cpu temperature, ram used, ram total, ram %, disk used, disk total, disk %
+ *            u16 core count, then one f32 usage per core
+ *
+ * history    u16 series count
+ *            per series: u16 metric key id, u16 GPU index (0xFFFF for host metrics),
+ *                        i64 from, i64 to, i64 step, u32 bucket count
+ *            per non-empty bucket: u32 milliseconds since the previous bucket (the first one since
+ *                                  {@code from}), f32 min, f32 max, f32 average, u32 sample count
+ * </pre>
+ *
+ * GPU names, the hostname, metric keys and UUID prefixes ({@code GPU-}, {@code MIG-}) are sent
+ * once in the dictionary and referred to by id. A UUID that does not end with a 128-bit UUID,
+ * such as the older {@code MIG-GPU-<uuid>/1/0} form, is sent whole as its prefix with a nil
+ * UUID.
+ *
+ * <p>Messages are encoded into buffers taken from a small pool, which the caller returns with
+ * {@link #release(ByteBuffer)} once written.
+ */
+public final class BinaryEncoder {
+    static final int MAGIC = 0x424d5047; // "GPMB" when written little-endian
+    static final int VERSION = 2;
+    static final int KIND_SNAPSHOT = 1;
+    static final int KIND_HISTORY = 2;
+    static final int HOST = 0xffff;
+
+    private static final int GPU_SIZE = 2 + 2 + 2 + 16 + 6 * 4;
+    private static final int BUCKET_SIZE = 4 + 3 * 4 + 4;
+    private static final int POOL_SIZE = 16;
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+    private static final UUID NIL = new UUID(0, 0);
+
+    private BinaryEncoder() {
+    }
+
+    /** Encodes {@code snapshot}; the returned buffer is ready to be read from position 0. */
+    public static ByteBuffer encodeSnapshot(MetricsSnapshot snapshot) {
+        List<GpuSample> gpus = snapshot.getGpus();
+        SystemSample system = snapshot.getSystem();
+        List<byte[]> dictionary = new ArrayList<>();
+        int hostnameId = intern(dictionary, system.getHostname());
+        int[] nameIds = new int[gpus.size()];
+        int[] prefixIds = new int[gpus.size()];
+        UUID[] uuids = new UUID[gpus.size()];
+        for (int i = 0; i < nameIds.length; i++) {
+            GpuSample gpu = gpus.get(i);
+            nameIds[i] = intern(dictionary, gpu.getName());
+            String uuid = gpu.getUuid();
+            int start = uuidStart(uuid);
+            prefixIds[i] = intern(dictionary, start < 0 ? uuid : uuid.substring(0, start));
+            uuids[i] = start < 0 ? NIL : UUID.fromString(uuid.substring(start));
+        }
+
+        int size = headerSize(dictionary) + 8 + 8 + 2 + 2 + gpus.size() * GPU_SIZE
+            + 8 * 4 + 2 + system.getCoreCount() * 4;
+        ByteBuffer buffer = acquire(size);
+        writeHeader(buffer, KIND_SNAPSHOT, dictionary);
+        buffer.putLong(snapshot.getSequence())
+              .putLong(snapshot.getTimestamp())
+              .putShort((short) hostnameId)
+              .putShort((short) gpus.size());
+        for (int i = 0; i < nameIds.length; i++) {
+            GpuSample gpu = gpus.get(i);
+            buffer.putShort((short) gpu.getIndex())
+                  .putShort((short) nameIds[i])
+                  .putShort((short) prefixIds[i])
+                  .putLong(uuids[i].getMostSignificantBits())
+                  .putLong(uuids[i].getLeastSignificantBits())
+                  .putFloat((float) gpu.getTemperature())
+                  .putFloat((float) gpu.getUtilization())
+                  .putFloat((float) gpu.getMemoryUsed())
+                  .putFloat((float) gpu.getMemoryTotal())
+                  .putFloat((float) gpu.getPowerDraw())
+                  .putFloat((float) gpu.getPowerLimit());
+        }
+        buffer.putFloat((float) system.getCpuUsage())
+              .putFloat((float) system.getCpuTemp())
+              .putFloat((float) system.getRamUsed())
+              .putFloat((float) system.getRamTotal())
+              .putFloat((float) system.getRamPercentage())
+              .putFloat((float) system.getDiskUsed())
+              .putFloat((float) system.getDiskTotal())
+              .putFloat((float) system.getDiskPercentage())
+              .putShort((short) system.getCoreCount());
+        for (int core = 0; core < system.getCoreCount(); core++) {
+            buffer.putFloat((float) system.getCoreUsage(core));
+        }
+        return buffer.flip();
+    }
+
+    /** Encodes several history ranges in one message, skipping their empty buckets. */
+    public static ByteBuffer encodeHistory(List<HistoryRange> ranges) {
+        List<byte[]> dictionary = new ArrayList<>();
+        int[] keyIds = new int[ranges.size()];
+        int size = 2;
+        for (int i = 0; i < keyIds.length; i++) {
+            HistoryRange range = ranges.get(i);
+            keyIds[i] = intern(dictionary, range.getMetric().getKey());
+            int buckets = 0;
+            for (int bucket = 0; bucket < range.getBucketCount(); bucket++) {
+                if (range.getCount(bucket) > 0) buckets++;
+            }
+            size += 2 + 2 + 3 * 8 + 4 + buckets * BUCKET_SIZE;
+        }
+        size += headerSize(dictionary);
+
+        ByteBuffer buffer = acquire(size);
+        writeHeader(buffer, KIND_HISTORY, dictionary);
+        buffer.putShort((short) ranges.size());
+        for (int i = 0; i < keyIds.length; i++) {
+            HistoryRange range = ranges.get(i);
+            buffer.putShort((short) keyIds[i])
+                  .putShort((short) (range.getMetric().isPerGpu() ? range.getGpu() : HOST))
+                  .putLong(range.getFrom())
+                  .putLong(range.getTo())
+                  .putLong(range.getStep());
+            int countPosition = buffer.position();
+            buffer.putInt(0);
+            int buckets = 0;
+            long previous = range.getFrom();
+            for (int bucket = 0; bucket < range.getBucketCount(); bucket++) {
+                if (range.getCount(bucket) == 0) continue;
+                long start = range.getBucketStart(bucket);
+                buffer.putInt((int) (start - previous))
+                      .putFloat((float) range.getMin(bucket))
+                      .putFloat((float) range.getMax(bucket))
+                      .putFloat((float) range.getAverage(bucket))
+                      .putInt(range.getCount(bucket));
+                previous = start;
+                buckets++;
+            }
+            buffer.putInt(countPosition, buckets);
+        }
+        return buffer.flip();
+    }
+
+    /** Returns a buffer obtained from this class to the pool. */
+    public static void release(ByteBuffer buffer) {
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) return;
+        if (POOLED.incrementAndGet() <= POOL_SIZE) {
+            POOL.offer(buffer.clear());
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    private static ByteBuffer acquire(int size) {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer != null) {
+            POOLED.decrementAndGet();
+            if (buffer.capacity() >= size) {
+                return buffer;
+            }
+        }
+        // Heap buffers, so that the backing array is written to the socket stream without a copy
+        return ByteBuffer.allocate(Math.max(size, 4096)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int intern(List<byte[]> dictionary, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < dictionary.size(); i++) {
+            if (Arrays.equals(dictionary.get(i), bytes)) return i;
+        }
+        dictionary.add(bytes.length > 0xffff ? Arrays.copyOf(bytes, 0xffff) : bytes);
+        return dictionary.size() - 1;
+    }
+
+    private static int headerSize(List<byte[]> dictionary) {
+        int size = 4 + 1 + 1 + 2;
+        for (byte[] entry : dictionary) {
+            size += 2 + entry.length;
+        }
+        return size;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int kind, List<byte[]> dictionary) {
+        buffer.putInt(MAGIC)
+              .put((byte) VERSION)
+              .put((byte) kind)
+              .putShort((short) dictionary.size());
+        for (byte[] entry : dictionary) {
+            buffer.putShort((short) entry.length).put(entry);
+        }
+    }
+
+    /**
+     * Returns where the trailing 128-bit UUID of an nvidia-smi UUID starts (4 in
+     * {@code GPU-6e1f...} and {@code MIG-6e1f...}), or -1 if it has none or it is nil.
+     */
+    private static int uuidStart(String uuid) {
+        int start = uuid.length() - 36;
+        if (start < 0 || (start > 0 && uuid.charAt(start - 1) != '-')) {
+            return -1;
+        }
+        try {
+            String text = uuid.substring(start);
+            UUID parsed = UUID.fromString(text);
+            // fromString also accepts short groups, which would not print back the same
+            return parsed.equals(NIL) || !parsed.toString().equalsIgnoreCase(text) ? -1 : start;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
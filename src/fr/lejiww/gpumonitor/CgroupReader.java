@@ -0,0 +1,259 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads the resource use of a cgroup v2 group, normally the container the monitor runs in:
+ * {@code cpu.stat}, {@code cpu.max}, {@code memory.current}, {@code memory.max},
+ * {@code memory.stat} and {@code io.stat}. Like {@link ProcStatReader}, every file is kept
+ * open and re-read into a reusable buffer, and rates are computed from the counters of the
+ * previous call to {@link #sample()}; the first sample reports no usage. Instances are not
+ * thread-safe.
+ */
+public class CgroupReader {
+    private static final byte[] USAGE_USEC = "usage_usec ".getBytes();
+    private static final byte[] NR_PERIODS = "nr_periods ".getBytes();
+    private static final byte[] NR_THROTTLED = "nr_throttled ".getBytes();
+    private static final byte[] ANON = "anon ".getBytes();
+    private static final byte[] FILE = "file ".getBytes();
+    private static final byte[] INACTIVE_FILE = "inactive_file ".getBytes();
+    private static final byte[] RBYTES = "rbytes=".getBytes();
+    private static final byte[] WBYTES = "wbytes=".getBytes();
+    private static final byte[] MAX = "max".getBytes();
+
+    private final Path directory;
+    private final CgroupFile cpuStat;
+    private final CgroupFile cpuMax;
+    private final CgroupFile memoryCurrent;
+    private final CgroupFile memoryMax;
+    private final CgroupFile memoryStat;
+    private final CgroupFile ioStat;
+
+    private long previousNanos;
+    private long previousUsageUsec;
+    private long previousPeriods;
+    private long previousThrottled;
+    private long previousReadBytes;
+    private long previousWriteBytes;
+    // Whether previousReadBytes and previousWriteBytes come from a non-empty io.stat
+    private boolean hasPreviousIo;
+
+    private double cpuCoresUsed;
+    private double cpuLimitCores;
+    private double throttledPercentage;
+    private long memoryUsedBytes;
+    private long memoryLimitBytes;
+    private long anonBytes;
+    private long fileBytes;
+    private long inactiveFileBytes;
+    private double ioReadBytesPerSecond;
+    private double ioWriteBytesPerSecond;
+
+    public CgroupReader(Path directory) {
+        this.directory = directory;
+        this.cpuStat = new CgroupFile(directory.resolve("cpu.stat"));
+        this.cpuMax = new CgroupFile(directory.resolve("cpu.max"));
+        this.memoryCurrent = new CgroupFile(directory.resolve("memory.current"));
+        this.memoryMax = new CgroupFile(directory.resolve("memory.max"));
+        this.memoryStat = new CgroupFile(directory.resolve("memory.stat"));
+        this.ioStat = new CgroupFile(directory.resolve("io.stat"));
+    }
+
+    /**
+     * Finds the cgroup v2 group of the monitor: the one named in {@code <procRoot>/self/cgroup}
+     * under {@code mount}, or {@code mount} itself when that path is not visible, as inside a
+     * container without its own cgroup namespace. Returns {@code null} on cgroup v1, and for a
+     * group with neither a CPU nor a memory limit unless it is the root of a cgroup namespace,
+     * so that a monitor running straight on the host does not report its own systemd unit.
+     */
+    public static Path detect(Path procRoot, Path mount) {
+        if (!Files.isRegularFile(mount.resolve("cgroup.controllers"))) {
+            return null;
+        }
+        String path = null;
+        try {
+            List<String> lines = Files.readAllLines(procRoot.resolve("self").resolve("cgroup"));
+            for (String line : lines) {
+                // cgroup v2 is the single "0::<path>" entry
+                if (line.startsWith("0::")) {
+                    path = line.substring(3).trim();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        if (path == null) {
+            return null;
+        }
+        Path group = mount.resolve(path.startsWith("/") ? path.substring(1) : path).normalize();
+        if (!group.startsWith(mount) || !Files.isRegularFile(group.resolve("memory.current"))) {
+            group = mount;
+        }
+        // The host's root group has no memory.current
+        if (!Files.isRegularFile(group.resolve("memory.current"))) {
+            return null;
+        }
+        if ("/".equals(path) || isLimited(group)) {
+            return group;
+        }
+        return null;
+    }
+
+    private static boolean isLimited(Path group) {
+        try {
+            return !Files.readString(group.resolve("memory.max")).trim().equals("max")
+                || !Files.readString(group.resolve("cpu.max")).trim().startsWith("max");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean sample() {
+        if (!memoryCurrent.readFile() || !cpuStat.readFile()) return false;
+        long now = System.nanoTime();
+        double elapsedSeconds = previousNanos == 0 ? 0 : (now - previousNanos) / 1e9;
+
+        long usageUsec = cpuStat.field(USAGE_USEC);
+        long periods = cpuStat.field(NR_PERIODS);
+        long throttled = cpuStat.field(NR_THROTTLED);
+        if (elapsedSeconds > 0) {
+            cpuCoresUsed = Math.max(0, (usageUsec - previousUsageUsec) / 1e6 / elapsedSeconds);
+            long deltaPeriods = periods - previousPeriods;
+            throttledPercentage = deltaPeriods > 0 ? 100.0 * (throttled - previousThrottled) / deltaPeriods : 0;
+        }
+        previousUsageUsec = usageUsec;
+        previousPeriods = periods;
+        previousThrottled = throttled;
+
+        // "max 100000" when unlimited, "<quota> <period>" otherwise; the root group has no cpu.max
+        cpuLimitCores = 0;
+        if (cpuMax.readFile() && !cpuMax.startsWith(0, MAX)) {
+            long quota = cpuMax.parseLong(0);
+            long period = cpuMax.parseLong(cpuMax.skipSpaces(cpuMax.parseEnd));
+            if (period > 0) cpuLimitCores = (double) quota / period;
+        }
+
+        memoryUsedBytes = memoryCurrent.parseLong(0);
+        memoryLimitBytes = memoryMax.readFile() && !memoryMax.startsWith(0, MAX) ? memoryMax.parseLong(0) : 0;
+        if (memoryStat.readFile()) {
+            anonBytes = memoryStat.field(ANON);
+            fileBytes = memoryStat.field(FILE);
+            inactiveFileBytes = memoryStat.field(INACTIVE_FILE);
+        }
+
+        if (ioStat.readFile()) {
+            long readBytes = ioStat.sum(RBYTES);
+            long writeBytes = ioStat.sum(WBYTES);
+            // The first reading after io.stat fills up holds every byte since the group started
+            if (hasPreviousIo && elapsedSeconds > 0) {
+                ioReadBytesPerSecond = Math.max(0, (readBytes - previousReadBytes) / elapsedSeconds);
+                ioWriteBytesPerSecond = Math.max(0, (writeBytes - previousWriteBytes) / elapsedSeconds);
+            }
+            previousReadBytes = readBytes;
+            previousWriteBytes = writeBytes;
+            hasPreviousIo = true;
+        } else {
+            // Empty until the group does any I/O
+            ioReadBytesPerSecond = 0;
+            ioWriteBytesPerSecond = 0;
+            hasPreviousIo = false;
+        }
+        previousNanos = now;
+        return true;
+    }
+
+    public void close() {
+        cpuStat.close();
+        cpuMax.close();
+        memoryCurrent.close();
+        memoryMax.close();
+        memoryStat.close();
+        ioStat.close();
+    }
+
+    /** CPU time used over the last sampling period, in cores. */
+    public double getCpuCoresUsed() {
+        return cpuCoresUsed;
+    }
+
+    /** CPU quota in cores, or 0 when unlimited. */
+    public double getCpuLimitCores() {
+        return cpuLimitCores;
+    }
+
+    /** Share of scheduler periods in which the group was throttled, over the last sampling period. */
+    public double getThrottledPercentage() {
+        return throttledPercentage;
+    }
+
+    public long getMemoryUsedBytes() {
+        return memoryUsedBytes;
+    }
+
+    /** Memory limit in bytes, or 0 when unlimited. */
+    public long getMemoryLimitBytes() {
+        return memoryLimitBytes;
+    }
+
+    /**
+     * Memory in use minus the page cache the kernel can reclaim first, the figure the OOM
+     * killer and container runtimes look at.
+     */
+    public long getMemoryWorkingSetBytes() {
+        return Math.max(0, memoryUsedBytes - inactiveFileBytes);
+    }
+
+    public long getAnonBytes() {
+        return anonBytes;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public double getIoReadBytesPerSecond() {
+        return ioReadBytesPerSecond;
+    }
+
+    public double getIoWriteBytesPerSecond() {
+        return ioWriteBytesPerSecond;
+    }
+
+    /** One cgroup interface file, with lookups that scan the raw bytes. */
+    private static final class CgroupFile extends ProcFileReader {
+        CgroupFile(Path path) {
+            super(path);
+        }
+
+        /** Value of the {@code key value} line starting with {@code key}, or 0. */
+        long field(byte[] key) {
+            int pos = 0;
+            while (pos < length) {
+                if (startsWith(pos, key)) {
+                    return parseLong(pos + key.length);
+                }
+                pos = nextLine(pos);
+            }
+            return 0;
+        }
+
+        /** Sum of every {@code key=value} pair in the file, one per device line in {@code io.stat}. */
+        long sum(byte[] key) {
+            long total = 0;
+            for (int pos = 0; pos < length; pos++) {
+                if ((pos == 0 || buffer[pos - 1] == ' ') && startsWith(pos, key)) {
+                    total += parseLong(pos + key.length);
+                    pos = parseEnd;
+                }
+            }
+            return total;
+        }
+    }
+}
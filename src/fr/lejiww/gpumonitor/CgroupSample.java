@@ -0,0 +1,118 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Locale;
+
+/**
+ * One reading of the cgroup the monitor runs in, from {@link CgroupReader}. Percentages are
+ * of the group's own limits; a resource without a limit is measured against the host.
+ */
+public final class CgroupSample {
+    private final String group;
+    private final double cpuCoresUsed;
+    private final double cpuLimitCores;
+    private final double cpuUsage;
+    private final double throttledPercentage;
+    private final long memoryUsedBytes;
+    private final long memoryWorkingSetBytes;
+    private final long memoryLimitBytes;
+    private final double memoryPercentage;
+    private final long anonBytes;
+    private final long fileBytes;
+    private final double ioReadBytesPerSecond;
+    private final double ioWriteBytesPerSecond;
+
+    /**
+     * @param hostCores       cores to measure CPU use against when the group has no quota
+     * @param hostMemoryBytes memory to measure against when the group has no limit
+     */
+    public CgroupSample(String group, CgroupReader reader, int hostCores, long hostMemoryBytes) {
+        this.group = group;
+        this.cpuCoresUsed = reader.getCpuCoresUsed();
+        this.cpuLimitCores = reader.getCpuLimitCores();
+        double cores = cpuLimitCores > 0 ? cpuLimitCores : hostCores;
+        this.cpuUsage = cores > 0 ? Math.min(100, 100 * cpuCoresUsed / cores) : 0;
+        this.throttledPercentage = reader.getThrottledPercentage();
+        this.memoryUsedBytes = reader.getMemoryUsedBytes();
+        this.memoryWorkingSetBytes = reader.getMemoryWorkingSetBytes();
+        this.memoryLimitBytes = reader.getMemoryLimitBytes();
+        long memory = memoryLimitBytes > 0 ? memoryLimitBytes : hostMemoryBytes;
+        this.memoryPercentage = memory > 0 ? 100.0 * memoryWorkingSetBytes / memory : 0;
+        this.anonBytes = reader.getAnonBytes();
+        this.fileBytes = reader.getFileBytes();
+        this.ioReadBytesPerSecond = reader.getIoReadBytesPerSecond();
+        this.ioWriteBytesPerSecond = reader.getIoWriteBytesPerSecond();
+    }
+
+    /** Appends the JSON form; limits are {@code null} when the group has none. */
+    void appendJson(StringBuilder sb) {
+        sb.append("{\"group\":");
+        Json.appendQuoted(sb, group);
+        sb.append(",\"cpuUsage\":").append(format("%.1f", cpuUsage))
+          .append(",\"cpuCoresUsed\":").append(format("%.2f", cpuCoresUsed))
+          .append(",\"cpuLimitCores\":").append(cpuLimitCores > 0 ? format("%.2f", cpuLimitCores) : "null")
+          .append(",\"cpuThrottledPercentage\":").append(format("%.1f", throttledPercentage))
+          .append(",\"ramUsed\":").append(format("%.2f", memoryWorkingSetBytes / (1024.0 * 1024.0 * 1024.0)))
+          .append(",\"ramLimit\":").append(memoryLimitBytes > 0 ? format("%.2f", memoryLimitBytes / (1024.0 * 1024.0 * 1024.0)) : "null")
+          .append(",\"ramPercentage\":").append(format("%.1f", memoryPercentage))
+          .append(",\"memoryCurrentBytes\":").append(memoryUsedBytes)
+          .append(",\"memoryWorkingSetBytes\":").append(memoryWorkingSetBytes)
+          .append(",\"memoryLimitBytes\":").append(memoryLimitBytes > 0 ? Long.toString(memoryLimitBytes) : "null")
+          .append(",\"anonBytes\":").append(anonBytes)
+          .append(",\"fileBytes\":").append(fileBytes)
+          .append(",\"ioReadBytesPerSecond\":").append(Math.round(ioReadBytesPerSecond))
+          .append(",\"ioWriteBytesPerSecond\":").append(Math.round(ioWriteBytesPerSecond))
+          .append('}');
+    }
+
+    private static String format(String pattern, double value) {
+        return String.format(Locale.ROOT, pattern, value);
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public double getCpuCoresUsed() {
+        return cpuCoresUsed;
+    }
+
+    /** CPU quota in cores, or 0 when unlimited. */
+    public double getCpuLimitCores() {
+        return cpuLimitCores;
+    }
+
+    /** CPU use in percent of the quota, or of every host core without one. */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    public double getThrottledPercentage() {
+        return throttledPercentage;
+    }
+
+    public long getMemoryUsedBytes() {
+        return memoryUsedBytes;
+    }
+
+    public long getMemoryWorkingSetBytes() {
+        return memoryWorkingSetBytes;
+    }
+
+    /** Memory limit in bytes, or 0 when unlimited. */
+    public long getMemoryLimitBytes() {
+        return memoryLimitBytes;
+    }
+
+    /** Working set in percent of the limit, or of host memory without one. */
+    public double getMemoryPercentage() {
+        return memoryPercentage;
+    }
+
+    public double getIoReadBytesPerSecond() {
+        return ioReadBytesPerSecond;
+    }
+
+    public double getIoWriteBytesPerSecond() {
+        return ioWriteBytesPerSecond;
+    }
+}
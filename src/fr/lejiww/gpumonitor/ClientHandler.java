@@ -2,668 +2,582 @@ package fr.lejiww.gpumonitor;
 
 import java.io.*;
 import java.net.Socket;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class ClientHandler implements Runnable {
+    private static final int KEEP_ALIVE_TIMEOUT = Integer.getInteger("gpumonitor.http.keepAliveTimeout", 5000);
+    private static final int MAX_KEEP_ALIVE_REQUESTS = Integer.getInteger("gpumonitor.http.maxKeepAliveRequests", 1000);
+    private static final int HEADER_TIMEOUT = Integer.getInteger("gpumonitor.server.headerTimeout", 10000);
+
+    private static final Set<String> KNOWN_ROUTES = Set.of(
+        "/update", "/snapshot", "/stream", "/health", "/gpu", "/system", "/metrics", "/history", "/binary", "/debug",
+        "/processes", "/alerts", "/fleet", "/fleet/snapshot", "/ollama/start", "/ollama/stop", "/ollama/restart", "/ollama/status", "/ollama/models");
+
     private final Socket clientSocket;
+    private final MetricsSampler sampler;
+    private final SnapshotBroadcaster broadcaster;
+    private final MetricHistory history;
+    private final MetricStore store;
+    private final PrometheusExporter prometheus;
+    private final OllamaController ollama;
+    private final AlertEngine alerts;
+    private final FleetAggregator fleet;
+    private final GpuProcessCollector processes;
+    private OutputStream out;
+    private boolean keepAlive;
+    private boolean headRequest;
+    private String route;
+    private String status;
 
-    public ClientHandler(Socket socket) {
+    public ClientHandler(Socket socket, MonitorServices services) {
         this.clientSocket = socket;
+        this.sampler = services.getSampler();
+        this.broadcaster = services.getBroadcaster();
+        this.history = services.getHistory();
+        this.store = services.getStore();
+        this.prometheus = services.getPrometheus();
+        this.ollama = services.getOllama();
+        this.alerts = services.getAlerts();
+        this.fleet = services.getFleet();
+        this.processes = services.getProcesses();
         System.out.println("=== NEW CLIENT CONNECTION: " + socket.getRemoteSocketAddress() + " ===");
     }
 
     @Override
     public void run() {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()))) {
-
-            String requestLine = in.readLine();
-            if (requestLine == null) return;
-            
-            System.out.println("=== REQUEST: " + requestLine + " ===");
-
-            if (requestLine.startsWith("GET /update")) {
-                handleUpdateRequest(out);
-            } else if (requestLine.startsWith("GET /system")) {
-                handleSystemRequest(out);
-            } else if (requestLine.startsWith("GET /debug")) {
-                handleDebugPageRequest(out);
-            } else if (requestLine.startsWith("GET /ollama/start")) {
-                handleOllamaAction(out, "start");
-            } else if (requestLine.startsWith("GET /ollama/stop")) {
-                handleOllamaAction(out, "stop");
-            } else if (requestLine.startsWith("GET /ollama/restart")) {
-                handleOllamaAction(out, "restart");
-            } else if (requestLine.startsWith("GET /ollama/status")) {
-                handleOllamaStatus(out);
-            } else {
-                handleRootRequest(out);
+        boolean streaming = false;
+        try {
+            InputStream in = new BufferedInputStream(clientSocket.getInputStream());
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
+
+            int served = 0;
+            while (true) {
+                // Reset before parsing, so that an error response does not inherit the previous request's flags
+                headRequest = false;
+                route = "/";
+                status = null;
+                HttpRequest request;
+                try {
+                    request = HttpRequest.read(in, HEADER_TIMEOUT);
+                } catch (SocketTimeoutException e) {
+                    break;
+                } catch (HttpRequest.RequestTimeoutException e) {
+                    keepAlive = false;
+                    writeResponse("408 Request Timeout", "text/plain; charset=UTF-8", e.getMessage(), false);
+                    Instrumentation.histogram("http (request timeout)").record(0, true);
+                    break;
+                } catch (HttpRequest.BadRequestException e) {
+                    keepAlive = false;
+                    writeResponse("400 Bad Request", "text/plain; charset=UTF-8", e.getMessage(), false);
+                    Instrumentation.histogram("http (bad request)").record(0, true);
+                    break;
+                }
+                if (request == null) break;
+
+                System.out.println("=== REQUEST: " + request + " ===");
+                served++;
+                keepAlive = request.isKeepAlive() && served < MAX_KEEP_ALIVE_REQUESTS;
+                headRequest = "HEAD".equals(request.getMethod());
+
+                long started = System.nanoTime();
+                try {
+                    streaming = dispatch(request);
+                } finally {
+                    Instrumentation.histogram("http " + route).recordSince(started, status == null || status.startsWith("5"));
+                }
+                if (streaming || !keepAlive) break;
+
+                // Pipelined requests already buffered are answered before anything is flushed
+                if (in.available() == 0) {
+                    out.flush();
+                }
+                clientSocket.setSoTimeout(KEEP_ALIVE_TIMEOUT);
+            }
+            if (!streaming) {
+                out.flush();
             }
 
         } catch (IOException e) {
             System.err.println("Error handling request: " + e.getMessage());
         } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (!streaming) {
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
     }
 
-    private void handleOllamaAction(BufferedWriter out, String action) throws IOException {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("sudo", "service", "ollama", action);
-            Process process = pb.start();
-            process.waitFor();
-            
-            String response = "{\"success\": true, \"action\": \"" + action + "\"}";
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: application/json; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + response.length() + "\r\n");
-            out.write("\r\n");
-            out.write(response);
-            out.flush();
-        } catch (Exception e) {
-            String response = "{\"success\": false, \"action\": \"" + action + "\"}";
-            out.write("HTTP/1.1 500 Internal Server Error\r\n");
-            out.write("Content-Type: application/json; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + response.length() + "\r\n");
-            out.write("\r\n");
-            out.write(response);
-            out.flush();
+    /**
+     * Routes one request. Returns {@code true} when the connection has been handed over
+     * to the stream broadcaster and must be left open.
+     */
+    private boolean dispatch(HttpRequest request) throws IOException {
+        if (!"GET".equals(request.getMethod()) && !headRequest) {
+            route = "(method not allowed)";
+            writeResponse("405 Method Not Allowed", "text/plain; charset=UTF-8", "Method Not Allowed", false, "Allow: GET, HEAD");
+            return false;
+        }
+
+        String path = request.getPath();
+        if (path.startsWith("/gpu/")) {
+            route = "/gpu/{id}";
+        } else if (path.startsWith("/ollama/jobs/")) {
+            route = "/ollama/jobs/{id}";
+        } else if (!path.isEmpty() && KNOWN_ROUTES.contains(path)) {
+            route = path;
+        }
+        if (!path.equals("/health")) {
+            sampler.markActivity();
+        }
+        if (path.equals("/update")) {
+            handleUpdateRequest();
+        } else if (path.equals("/snapshot")) {
+            handleSnapshotRequest(request);
+        } else if (path.equals("/stream")) {
+            return handleStreamRequest();
+        } else if (path.equals("/health")) {
+            handleHealthRequest();
+        } else if (path.equals("/gpu")) {
+            handleGpuListRequest();
+        } else if (path.startsWith("/gpu/")) {
+            handleGpuRequest(path.substring("/gpu/".length()));
+        } else if (path.equals("/system")) {
+            handleSystemRequest(request);
+        } else if (path.equals("/metrics")) {
+            handleMetricsRequest(request);
+        } else if (path.equals("/history")) {
+            handleHistoryRequest(request);
+        } else if (path.equals("/binary")) {
+            handleBinaryRequest(request);
+        } else if (path.equals("/debug")) {
+            handleDebugPageRequest(request);
+        } else if (path.equals("/processes")) {
+            writeResponse("200 OK", "application/json; charset=UTF-8",
+                processes.getLatest().toJson(sampler.getSnapshot().getGpus()), true, "Cache-Control: no-store");
+        } else if (path.equals("/alerts")) {
+            writeResponse("200 OK", "application/json; charset=UTF-8", alerts.toJson(), true, "Cache-Control: no-store");
+        } else if (path.equals("/fleet") || path.equals("/fleet/snapshot")) {
+            handleFleetRequest(request, path.equals("/fleet"));
+        } else if (path.equals("/ollama/start")) {
+            handleOllamaAction("start");
+        } else if (path.equals("/ollama/stop")) {
+            handleOllamaAction("stop");
+        } else if (path.equals("/ollama/restart")) {
+            handleOllamaAction("restart");
+        } else if (path.equals("/ollama/status")) {
+            handleOllamaStatus();
+        } else if (path.equals("/ollama/models")) {
+            writeResponse("200 OK", "application/json; charset=UTF-8", sampler.getSnapshot().getOllamaJson(), true);
+        } else if (path.startsWith("/ollama/jobs/")) {
+            handleOllamaJobRequest(path.substring("/ollama/jobs/".length()));
+        } else {
+            handleRootRequest(request);
+        }
+        return false;
+    }
+
+    private void writeResponse(String status, String contentType, String body, boolean cors, String... headers) throws IOException {
+        writeResponse(status, contentType, body.getBytes(StandardCharsets.UTF_8), cors, headers);
+    }
+
+    private void writeResponse(String status, String contentType, byte[] body, boolean cors, String... headers) throws IOException {
+        writeResponse(status, contentType, body, body.length, cors, headers);
+    }
+
+    private void writeResponse(String status, String contentType, byte[] body, int length, boolean cors, String... headers) throws IOException {
+        this.status = status;
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(status).append("\r\n");
+        head.append("Content-Type: ").append(contentType).append("\r\n");
+        if (cors) {
+            head.append("Access-Control-Allow-Origin: *\r\n");
+        }
+        for (String header : headers) {
+            head.append(header).append("\r\n");
+        }
+        head.append("Content-Length: ").append(length).append("\r\n");
+        if (keepAlive) {
+            head.append("Connection: keep-alive\r\n");
+            head.append("Keep-Alive: timeout=").append(KEEP_ALIVE_TIMEOUT / 1000).append("\r\n");
+        } else {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (!headRequest) {
+            out.write(body, 0, length);
+        }
+    }
+
+    private void writeNotModified(String etag, String... headers) throws IOException {
+        status = "304 Not Modified";
+        StringBuilder head = new StringBuilder(128);
+        head.append("HTTP/1.1 304 Not Modified\r\n");
+        head.append("ETag: ").append(etag).append("\r\n");
+        for (String header : headers) {
+            head.append(header).append("\r\n");
         }
+        head.append(keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n");
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
     }
 
-    private void handleOllamaStatus(BufferedWriter out) throws IOException {
+    private boolean handleStreamRequest() throws IOException {
+        SnapshotBroadcaster.Subscriber subscriber = broadcaster.subscribe(clientSocket);
+        if (subscriber == null) {
+            writeResponse("503 Service Unavailable", "text/plain; charset=UTF-8", "Too many open streams", false, "Retry-After: 10");
+            return false;
+        }
+
+        String head = "HTTP/1.1 200 OK\r\n" +
+                      "Content-Type: text/event-stream; charset=UTF-8\r\n" +
+                      "Cache-Control: no-cache\r\n" +
+                      "Connection: keep-alive\r\n" +
+                      "Access-Control-Allow-Origin: *\r\n" +
+                      "\r\n" +
+                      "retry: 2000\n\n";
         try {
-            ProcessBuilder pb = new ProcessBuilder("systemctl", "is-active", "ollama");
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String status = reader.readLine();
-            reader.close();
-            process.waitFor();
-            
-            if (status == null) status = "unknown";
-            
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: text/plain; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + status.length() + "\r\n");
-            out.write("\r\n");
-            out.write(status);
-            out.flush();
-        } catch (Exception e) {
-            String status = "unknown";
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: text/plain; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + status.length() + "\r\n");
-            out.write("\r\n");
-            out.write(status);
+            out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+            out.write(SnapshotBroadcaster.encodeEvent(sampler.getSnapshot()));
             out.flush();
+        } catch (IOException e) {
+            broadcaster.remove(subscriber);
+            throw e;
         }
+        status = "200 OK";
+
+        subscriber.start();
+        return true;
     }
 
-    private void handleRootRequest(BufferedWriter out) throws IOException {
-        String html = generateHtmlPage();
-        out.write("HTTP/1.1 200 OK\r\n");
-        out.write("Content-Type: text/html; charset=UTF-8\r\n");
-        out.write("Content-Length: " + html.length() + "\r\n");
-        out.write("\r\n");
-        out.write(html);
-        out.flush();
+    /** Queues the action and answers at once; the result is polled from /ollama/jobs/{id}. */
+    private void handleOllamaAction(String action) throws IOException {
+        OllamaController.Job job = ollama.submit(action);
+        String location = "/ollama/jobs/" + job.getId();
+        String response = "{\"success\":true,\"action\":" + Json.quote(action) +
+            ",\"jobId\":" + Json.quote(job.getId()) + ",\"state\":" + Json.quote(job.getState()) +
+            ",\"location\":" + Json.quote(location) + "}";
+        writeResponse("202 Accepted", "application/json; charset=UTF-8", response, true, "Location: " + location);
     }
 
-    private void handleUpdateRequest(BufferedWriter out) throws IOException {
+    private void handleOllamaJobRequest(String id) throws IOException {
+        OllamaController.Job job = ollama.getJob(id);
+        if (job == null) {
+            writeResponse("404 Not Found", "application/json; charset=UTF-8",
+                "{\"error\":" + Json.quote("No job " + id) + "}", true);
+            return;
+        }
+        writeResponse("200 OK", "application/json; charset=UTF-8", job.toJson(), true, "Cache-Control: no-store");
+    }
+
+    private void handleOllamaStatus() throws IOException {
+        String status;
         try {
-            String gpuInfo = executeNvidiaSmiCommand();
-            
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: text/plain; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + gpuInfo.length() + "\r\n");
-            out.write("\r\n");
-            out.write(gpuInfo);
-            out.flush();
-            
+            status = sampler.getSnapshot().getOllamaStatus();
         } catch (Exception e) {
-            String errorMsg = "GPU Not Available,0,0,0,0,0,0";
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: text/plain; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + errorMsg.length() + "\r\n");
-            out.write("\r\n");
-            out.write(errorMsg);
-            out.flush();
+            status = "unknown";
         }
+        writeResponse("200 OK", "text/plain; charset=UTF-8", status, true);
     }
 
-    private void handleSystemRequest(BufferedWriter out) throws IOException {
+    private void handleRootRequest(HttpRequest request) throws IOException {
+        servePage(request, DashboardPage.get());
+    }
+
+    private void handleFleetRequest(HttpRequest request, boolean page) throws IOException {
+        if (fleet == null) {
+            writeResponse("404 Not Found", "text/plain; charset=UTF-8",
+                "Aggregator mode is off, start with -Dgpumonitor.fleet.peers=<url>,<url>...", true);
+        } else if (page) {
+            servePage(request, DashboardPage.fleet());
+        } else {
+            writeResponse("200 OK", "application/json; charset=UTF-8", fleet.toJson(), true, "Cache-Control: no-store");
+        }
+    }
+
+    private void servePage(HttpRequest request, DashboardPage page) throws IOException {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? page.getGzipEtag() : page.getEtag();
+
+        if (DashboardPage.matches(request.getHeader("If-None-Match"), etag)) {
+            writeNotModified(etag, "Cache-Control: no-cache", "Vary: Accept-Encoding");
+            return;
+        }
+        if (gzip) {
+            writeResponse("200 OK", "text/html; charset=UTF-8", page.getGzipBytes(), false,
+                "Content-Encoding: gzip", "ETag: " + etag, "Cache-Control: no-cache", "Vary: Accept-Encoding");
+        } else {
+            writeResponse("200 OK", "text/html; charset=UTF-8", page.getBytes(), false,
+                "ETag: " + etag, "Cache-Control: no-cache", "Vary: Accept-Encoding");
+        }
+    }
+
+    private void handleUpdateRequest() throws IOException {
+        String gpuInfo;
         try {
-            String systemInfo = getSystemInfo();
-            
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: application/json; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + systemInfo.length() + "\r\n");
-            out.write("\r\n");
-            out.write(systemInfo);
-            out.flush();
-            
+            gpuInfo = sampler.getSnapshot().getGpuInfo();
         } catch (Exception e) {
-            String fallbackJson = "{\"cpuUsage\":0.0,\"ramUsed\":\"0\",\"ramTotal\":\"0\",\"ramPercentage\":0,\"diskUsed\":\"0\",\"diskTotal\":\"0\",\"diskPercentage\":0,\"cpuTemp\":0,\"loadAvg\":\"0.00 0.00 0.00\",\"osInfo\":\"Unknown\",\"hostname\":\"Unknown\",\"uptime\":\"Unknown\",\"cpuCores\":0}";
-            
-            out.write("HTTP/1.1 200 OK\r\n");
-            out.write("Content-Type: application/json; charset=UTF-8\r\n");
-            out.write("Access-Control-Allow-Origin: *\r\n");
-            out.write("Content-Length: " + fallbackJson.length() + "\r\n");
-            out.write("\r\n");
-            out.write(fallbackJson);
-            out.flush();
+            gpuInfo = "GPU Not Available,0,0,0,0,0,0";
         }
+        writeResponse("200 OK", "text/plain; charset=UTF-8", gpuInfo, true);
     }
 
-    private String executeNvidiaSmiCommand() {
+    /**
+     * Everything the dashboard shows in one payload, versioned by the snapshot sequence. A
+     * client passing the version it already has, as {@code ?since=} or {@code If-None-Match},
+     * gets a 304 until a newer snapshot exists.
+     */
+    private void handleSnapshotRequest(HttpRequest request) throws IOException {
+        long since;
         try {
-            ProcessBuilder pb = new ProcessBuilder(
-                "nvidia-smi",
-                "--query-gpu=name,temperature.gpu,utilization.gpu,memory.used,memory.total,power.draw,power.limit",
-                "--format=csv,noheader,nounits"
-            );
-            Process process = pb.start();
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line = reader.readLine();
-            reader.close();
-            
-            int exitCode = process.waitFor();
-            
-            if (line != null && !line.trim().isEmpty() && exitCode == 0) {
-                return line.trim().replaceAll("\\s*,\\s*", ",");
+            since = parseLong(request.getParameter("since"), -1);
+        } catch (NumberFormatException e) {
+            writeResponse("400 Bad Request", "text/plain; charset=UTF-8", "Invalid number: " + e.getMessage(), true);
+            return;
+        }
+        MetricsSnapshot current = sampler.getSnapshot();
+        String etag = "\"" + current.getSequence() + "\"";
+        // Only an equal version is current: a higher one was issued before a restart
+        if (since == current.getSequence() || DashboardPage.matches(request.getHeader("If-None-Match"), etag)) {
+            writeNotModified(etag, "Cache-Control: no-cache", "Access-Control-Allow-Origin: *");
+            return;
+        }
+        writeResponse("200 OK", "application/json; charset=UTF-8", current.toJson(), true,
+            "ETag: " + etag, "Cache-Control: no-cache");
+    }
+
+    /**
+     * Liveness probe: reports the age of the last snapshot without ever triggering a
+     * collection, and answers 503 when the sampler has fallen three intervals behind. The
+     * intervals are the current adaptive ones, so an idle sampler is not reported stale.
+     */
+    private void handleHealthRequest() throws IOException {
+        MetricsSnapshot current = sampler.peekSnapshot();
+        String state;
+        String json;
+        if (current == null) {
+            state = "starting";
+            json = "{\"status\":\"starting\"}";
+        } else {
+            long age = System.currentTimeMillis() - current.getTimestamp();
+            state = age <= 3 * sampler.getEffectiveIntervalMillis() ? "ok" : "stale";
+            json = "{\"status\":\"" + state + "\",\"sequence\":" + current.getSequence() +
+                ",\"snapshotAgeMillis\":" + age + ",\"sampling\":" + sampler.getScheduleJson() + "}";
+        }
+        writeResponse("ok".equals(state) ? "200 OK" : "503 Service Unavailable", "application/json; charset=UTF-8",
+            json, true, "Cache-Control: no-store");
+    }
+
+    private void handleGpuListRequest() throws IOException {
+        StringBuilder json = new StringBuilder(512).append('[');
+        for (GpuSample gpu : sampler.getSnapshot().getGpus()) {
+            if (json.length() > 1) json.append(',');
+            json.append(gpu.toJson());
+        }
+        json.append(']');
+        writeResponse("200 OK", "application/json; charset=UTF-8", json.toString(), true);
+    }
+
+    /** Looks a GPU up by its nvidia-smi index or by its UUID. */
+    private void handleGpuRequest(String id) throws IOException {
+        for (GpuSample gpu : sampler.getSnapshot().getGpus()) {
+            if (id.equals(Integer.toString(gpu.getIndex())) || id.equalsIgnoreCase(gpu.getUuid())) {
+                writeResponse("200 OK", "application/json; charset=UTF-8", gpu.toJson(), true);
+                return;
             }
-        } catch (Exception e) {
         }
-        return "GPU Not Available,0,0,0,0,0,0";
+        writeResponse("404 Not Found", "application/json; charset=UTF-8",
+            "{\"error\":" + Json.quote("No GPU " + id) + "}", true);
     }
 
-    private String getSystemInfo() {
-    	double cpuUsage = 0;
-    	try {
-    	    ProcessBuilder pb = new ProcessBuilder("top", "-bn1");
-    	    Process process = pb.start();
-    	    
-    	    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-    	    String line;
-    	    while ((line = reader.readLine()) != null) {
-    	        if (line.contains("Cpu(s)")) {
-    	            Pattern pattern = Pattern.compile("([0-9.]+)\\s+id");
-    	            Matcher matcher = pattern.matcher(line);
-    	            if (matcher.find()) {
-    	                double idle = Double.parseDouble(matcher.group(1));
-    	                cpuUsage = Math.max(0, 100 - idle);
-    	                break;
-    	            }
-    	        }
-    	    }
-    	    reader.close();
-    	    process.waitFor();
-    	} catch (Exception e) {
-    	    cpuUsage = 0;
-    	}
-        
-        double ramUsed = 0, ramTotal = 0, ramPercentage = 0;
-        try {
-            ProcessBuilder pb = new ProcessBuilder("free", "-m");
-            Process process = pb.start();
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            reader.readLine();
-            String memLine = reader.readLine();
-            reader.close();
-            
-            int exitCode = process.waitFor();
-            
-            if (memLine != null && exitCode == 0) {
-                String[] parts = memLine.trim().split("\\s+");
-                if (parts.length >= 3) {
-                    long total = Long.parseLong(parts[1]);
-                    long used = Long.parseLong(parts[2]);
-                    ramTotal = total / 1024.0;
-                    ramUsed = used / 1024.0;
-                    ramPercentage = (double) used / total * 100;
+    private void handleSystemRequest(HttpRequest request) throws IOException {
+        String fieldsParameter = request.getParameter("fields");
+        if (fieldsParameter != null) {
+            Set<String> fields = new LinkedHashSet<>();
+            for (String field : fieldsParameter.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty()) continue;
+                if (!SystemSample.FIELDS.contains(name)) {
+                    writeResponse("400 Bad Request", "text/plain; charset=UTF-8",
+                        "Unknown field " + name + ", expected some of: " + String.join(", ", SystemSample.FIELDS), true);
+                    return;
                 }
+                fields.add(name);
             }
-        } catch (Exception e) {
-            ramUsed = 0;
-            ramTotal = 0;
-            ramPercentage = 0;
+            writeResponse("200 OK", "application/json; charset=UTF-8", sampler.getSystemSample(fields).toJson(fields), true);
+            return;
         }
-        
-        double diskUsed = 0, diskTotal = 0, diskPercentage = 0;
+
+        String systemInfo;
         try {
-            File root = new File("/");
-            long total = root.getTotalSpace();
-            long free = root.getFreeSpace();
-            long used = total - free;
-            
-            if (total > 0) {
-                diskTotal = total / (1024.0 * 1024.0 * 1024.0);
-                diskUsed = used / (1024.0 * 1024.0 * 1024.0);
-                diskPercentage = (double) used / total * 100;
-            }
+            systemInfo = sampler.getSnapshot().getSystemInfo();
         } catch (Exception e) {
-            diskUsed = 0;
-            diskTotal = 0;
-            diskPercentage = 0;
+            systemInfo = "{\"cpuUsage\":0.0,\"ramUsed\":\"0\",\"ramTotal\":\"0\",\"ramPercentage\":0,\"diskUsed\":\"0\",\"diskTotal\":\"0\",\"diskPercentage\":0,\"cpuTemp\":0,\"loadAvg\":\"0.00 0.00 0.00\",\"osInfo\":\"Unknown\",\"hostname\":\"Unknown\",\"uptime\":\"Unknown\",\"cpuCores\":0}";
         }
-        
-        double cpuTemp = 0;
-        try {
-            String[] paths = {
-                "/sys/class/thermal/thermal_zone0/temp",
-                "/sys/class/thermal/thermal_zone1/temp"
-            };
-            
-            for (String path : paths) {
-                try {
-                    BufferedReader reader = new BufferedReader(new FileReader(path));
-                    String temp = reader.readLine();
-                    reader.close();
-                    if (temp != null) {
-                        double tempValue = Double.parseDouble(temp.trim()) / 1000.0;
-                        if (tempValue > 0 && tempValue < 150) {
-                            cpuTemp = tempValue;
-                            break;
-                        }
-                    }
-                } catch (Exception ignored) {}
+        writeResponse("200 OK", "application/json; charset=UTF-8", systemInfo, true);
+    }
+
+    private void handleDebugPageRequest(HttpRequest request) throws IOException {
+        if ("json".equals(request.getParameter("format"))) {
+            writeResponse("200 OK", "application/json; charset=UTF-8", Instrumentation.toJson(), true);
+            return;
+        }
+        String debugInfo = getDebugInfo();
+        String debugHtml = "<!DOCTYPE html><html><head><title>Debug</title></head><body><pre>" + debugInfo + "</pre></body></html>";
+        writeResponse("200 OK", "text/html; charset=UTF-8", debugHtml, false);
+    }
+
+    private void handleMetricsRequest(HttpRequest request) throws IOException {
+        String accept = request.getHeader("Accept");
+        boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+        byte[] body = prometheus.render(sampler.getSnapshot(), openMetrics);
+        writeResponse("200 OK", openMetrics ? PrometheusExporter.OPENMETRICS_CONTENT_TYPE : PrometheusExporter.TEXT_CONTENT_TYPE,
+            body, false);
+    }
+
+    private void handleHistoryRequest(HttpRequest request) throws IOException {
+        Metric metric = Metric.fromKey(request.getParameter("metric") == null ? "" : request.getParameter("metric"));
+        if (metric == null) {
+            StringBuilder known = new StringBuilder();
+            for (Metric m : Metric.values()) {
+                if (known.length() > 0) known.append(", ");
+                known.append(m.getKey());
             }
-        } catch (Exception e) {
-            cpuTemp = 0;
-        }
-        
-        String osInfo = "Unknown";
-        String hostname = "Unknown";
-        String uptime = "Unknown";
-        int cpuCores = 0;
-        String loadAvg = "0.00 0.00 0.00";
-        
-        try {
-            cpuCores = Runtime.getRuntime().availableProcessors();
-        } catch (Exception e) {
-            cpuCores = 0;
+            writeResponse("400 Bad Request", "text/plain; charset=UTF-8", "Unknown metric, expected one of: " + known, true);
+            return;
         }
-        
+
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("/etc/hostname"));
-            String h = reader.readLine();
-            if (h != null && !h.trim().isEmpty()) {
-                hostname = h.trim();
-            }
-            reader.close();
-        } catch (Exception e) {
-            hostname = "Unknown";
+            int gpu = parseInt(request.getParameter("gpu"), 0);
+            long[] range = parseRange(request);
+            writeResponse("200 OK", "application/json; charset=UTF-8",
+                queryHistory(metric, gpu, range[0], range[1], range[2]).toJson(), true);
+        } catch (NumberFormatException e) {
+            writeResponse("400 Bad Request", "text/plain; charset=UTF-8", "Invalid number: " + e.getMessage(), true);
+        } catch (IllegalArgumentException e) {
+            writeResponse("400 Bad Request", "text/plain; charset=UTF-8", e.getMessage(), true);
         }
-        
+    }
+
+    /**
+     * Reads {@code from}, {@code to} and {@code step} as {@code {from, to, step}}. The range is
+     * clamped to what is still kept, from the oldest sample to now, before the default step
+     * (about 500 buckets) is derived from it.
+     *
+     * @throws IllegalArgumentException if a value is not a number, or the range is inverted or
+     *         wider than a {@code long} can hold
+     */
+    private long[] parseRange(HttpRequest request) {
+        long now = System.currentTimeMillis();
+        long to = parseLong(request.getParameter("to"), now);
+        long from;
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("/etc/os-release"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("PRETTY_NAME=")) {
-                    osInfo = line.substring(13).replace("\"", "");
-                    break;
+            from = parseLong(request.getParameter("from"), Math.subtractExact(to, 3600_000L));
+            Math.subtractExact(to, from);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Range too wide");
+        }
+        if (from >= to) {
+            throw new IllegalArgumentException("Expected from < to");
+        }
+        long oldest = Math.min(history.getOldestTimestamp(), store == null ? Long.MAX_VALUE : store.getOldestTimestamp());
+        if (oldest < to) from = Math.max(from, oldest);
+        if (now > from) to = Math.min(to, now);
+        long step = parseLong(request.getParameter("step"), Math.max(1000L, (to - from) / 500));
+        if (step <= 0) {
+            throw new IllegalArgumentException("Expected step > 0");
+        }
+        return new long[] {from, to, step};
+    }
+
+    private HistoryRange queryHistory(Metric metric, int gpu, long from, long to, long step) {
+        // Ranges older than what is still in memory are read from the on-disk store
+        return store != null && from < history.getOldestTimestamp(metric, gpu)
+            ? store.query(metric, gpu, from, to, step)
+            : history.query(metric, gpu, from, to, step);
+    }
+
+    /**
+     * Binary form of the current snapshot, or with {@code metric}, of history ranges: a comma
+     * separated list of metrics, for the GPUs in {@code gpu} (all of them by default), with the
+     * same {@code from}, {@code to} and {@code step} as {@code /history}. See {@link BinaryEncoder}.
+     */
+    private void handleBinaryRequest(HttpRequest request) throws IOException {
+        String metrics = request.getParameter("metric");
+        ByteBuffer buffer;
+        if (metrics == null || metrics.isEmpty()) {
+            buffer = BinaryEncoder.encodeSnapshot(sampler.getSnapshot());
+        } else {
+            List<HistoryRange> ranges = new ArrayList<>();
+            try {
+                long[] range = parseRange(request);
+                long from = range[0];
+                long to = range[1];
+                long step = range[2];
+                List<Integer> gpus = new ArrayList<>();
+                String gpuList = request.getParameter("gpu");
+                if (gpuList == null || gpuList.isEmpty()) {
+                    for (GpuSample gpu : sampler.getSnapshot().getGpus()) {
+                        gpus.add(gpu.getIndex());
+                    }
+                } else {
+                    for (String gpu : gpuList.split(",")) {
+                        gpus.add(Integer.parseInt(gpu.trim()));
+                    }
+                }
+                for (String key : metrics.split(",")) {
+                    Metric metric = Metric.fromKey(key.trim());
+                    if (metric == null) {
+                        writeResponse("400 Bad Request", "text/plain; charset=UTF-8", "Unknown metric: " + key, true);
+                        return;
+                    }
+                    if (metric.isPerGpu()) {
+                        for (int gpu : gpus) {
+                            ranges.add(queryHistory(metric, gpu, from, to, step));
+                        }
+                    } else {
+                        ranges.add(queryHistory(metric, 0, from, to, step));
+                    }
                 }
+            } catch (NumberFormatException e) {
+                writeResponse("400 Bad Request", "text/plain; charset=UTF-8", "Invalid number: " + e.getMessage(), true);
+                return;
+            } catch (IllegalArgumentException e) {
+                writeResponse("400 Bad Request", "text/plain; charset=UTF-8", e.getMessage(), true);
+                return;
             }
-            reader.close();
-        } catch (Exception e) {
-            osInfo = "Unknown";
+            buffer = BinaryEncoder.encodeHistory(ranges);
         }
-        
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("/proc/uptime"));
-            String line = reader.readLine();
-            reader.close();
-            if (line != null) {
-                double uptimeSeconds = Double.parseDouble(line.split(" ")[0]);
-                long hours = (long) (uptimeSeconds / 3600);
-                long minutes = (long) ((uptimeSeconds % 3600) / 60);
-                uptime = (hours > 0 ? hours + "h " : "") + minutes + "m";
-            }
-        } catch (Exception e) {
-            uptime = "Unknown";
+            writeResponse("200 OK", "application/octet-stream", buffer.array(), buffer.limit(), true,
+                "Cache-Control: no-cache");
+        } finally {
+            BinaryEncoder.release(buffer);
         }
-        
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader("/proc/loadavg"));
-            String line = reader.readLine();
-            reader.close();
-            if (line != null) {
-                String[] parts = line.split(" ");
-                if (parts.length >= 3) {
-                    loadAvg = parts[0] + " " + parts[1] + " " + parts[2];
-                }
-            }
-        } catch (Exception e) {
-            loadAvg = "0.00 0.00 0.00";
-        }
-        
-        return String.format(
-            "{" +
-                "\"cpuUsage\":%.1f," +
-                "\"ramUsed\":\"%.1f\"," +
-                "\"ramTotal\":\"%.1f\"," +
-                "\"ramPercentage\":%.1f," +
-                "\"diskUsed\":\"%.0f\"," +
-                "\"diskTotal\":\"%.0f\"," +
-                "\"diskPercentage\":%.1f," +
-                "\"cpuTemp\":%.0f," +
-                "\"loadAvg\":\"%s\"," +
-                "\"osInfo\":\"%s\"," +
-                "\"hostname\":\"%s\"," +
-                "\"uptime\":\"%s\"," +
-                "\"cpuCores\":%d" +
-            "}",
-            cpuUsage, ramUsed, ramTotal, ramPercentage,
-            diskUsed, diskTotal, diskPercentage, cpuTemp,
-            loadAvg, osInfo, hostname, uptime, cpuCores
-        );
     }
 
-    private String generateHtmlPage() {
-        return "<!DOCTYPE html>\n" +
-                "<html lang=\"fr\">\n" +
-                "<head>\n" +
-                "  <meta charset=\"UTF-8\">\n" +
-                "  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n" +
-                "  <title>GPU & System Monitor</title>\n" +
-                "  <style>\n" +
-                "    body { margin: 0; font-family: 'Segoe UI', sans-serif; background: #f4f6f9; color: #333; display: flex; flex-direction: column; min-height: 100vh; }\n" +
-                "    header { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; padding: 20px; text-align: center; font-size: 24px; font-weight: bold; box-shadow: 0 2px 10px rgba(0,0,0,0.1); }\n" +
-                "    main { flex: 1; display: flex; padding: 20px; gap: 20px; }\n" +
-                "    .sidebar { flex: 1; max-width: 280px; display: flex; flex-direction: column; gap: 15px; height: fit-content; }\n" +
-                "    .info-card, .settings-card, .system-card, .ollama-card { background: #fff; border-radius: 12px; padding: 20px; box-shadow: 0 4px 12px rgba(0,0,0,0.1); }\n" +
-                "    .info-card h3, .settings-card h3, .system-card h3, .ollama-card h3 { margin: 0 0 15px 0; font-size: 16px; color: #2c3e50; border-bottom: 2px solid #3498db; padding-bottom: 8px; }\n" +
-                "    .info-item { display: flex; justify-content: space-between; margin-bottom: 8px; font-size: 13px; }\n" +
-                "    .info-label { color: #7f8c8d; font-weight: 500; }\n" +
-                "    .info-value { font-weight: 600; text-align: right; color: #2c3e50; }\n" +
-                "    .metric { margin-bottom: 10px; padding: 8px 10px; background: #f8f9fa; border-radius: 6px; border-left: 3px solid #3498db; }\n" +
-                "    .metric-label { font-weight: 600; color: #2c3e50; font-size: 12px; }\n" +
-                "    .metric-value { font-size: 14px; color: #27ae60; margin-top: 2px; }\n" +
-                "    .progress-bar { width: 100%; height: 6px; background: #e0e0e0; border-radius: 3px; overflow: hidden; margin-top: 6px; }\n" +
-                "    .progress-fill { height: 100%; background: linear-gradient(90deg, #27ae60, #2ecc71); transition: width 0.3s ease; }\n" +
-                "    .ollama-btn { width: 100%; padding: 10px; margin: 5px 0; border: none; border-radius: 6px; cursor: pointer; font-weight: bold; }\n" +
-                "    .btn-start { background: #27ae60; color: white; }\n" +
-                "    .btn-stop { background: #e74c3c; color: white; }\n" +
-                "    .btn-restart { background: #f39c12; color: white; }\n" +
-                "    .ollama-status { margin-bottom: 10px; padding: 5px; background: #f8f9fa; border-radius: 4px; font-size: 12px; }\n" +
-                "    .content { flex: 3; background: #fff; border-radius: 12px; padding: 25px; box-shadow: 0 4px 12px rgba(0,0,0,0.1); overflow-y: auto; }\n" +
-                "    .content h2 { margin-top: 0; font-size: 22px; margin-bottom: 20px; color: #2c3e50; }\n" +
-                "    table { width: 100%; border-collapse: collapse; margin-bottom: 20px; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 8px rgba(0,0,0,0.1); }\n" +
-                "    th, td { padding: 15px 12px; text-align: left; border-bottom: 1px solid #e0e0e0; }\n" +
-                "    th { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; font-weight: 600; font-size: 14px; }\n" +
-                "    tr:nth-child(even) { background-color: #f8f9fa; }\n" +
-                "    tr:hover { background-color: #e3f2fd; transition: background-color 0.2s; }\n" +
-                "    .gpu-temp { font-weight: bold; }\n" +
-                "    .temp-normal { color: #27ae60; }\n" +
-                "    .temp-warm { color: #f39c12; }\n" +
-                "    .temp-hot { color: #e74c3c; }\n" +
-                "    .power-low { color: #27ae60; font-weight: bold; }\n" +
-                "    .power-medium { color: #f39c12; font-weight: bold; }\n" +
-                "    .power-high { color: #e74c3c; font-weight: bold; }\n" +
-                "    .status-indicator { display: inline-block; width: 10px; height: 10px; border-radius: 50%; margin-right: 8px; background: #27ae60; animation: pulse 2s infinite; }\n" +
-                "    @keyframes pulse { 0% { opacity: 1; } 50% { opacity: 0.5; } 100% { opacity: 1; } }\n" +
-                "    @media (max-width: 768px) { main { flex-direction: column; } .sidebar { max-width: none; } }\n" +
-                "  </style>\n" +
-                "</head>\n" +
-                "<body>\n" +
-                "  <header>\n" +
-                "    <span class=\"status-indicator\"></span>\n" +
-                "    Real-time GPU & System Monitoring\n" +
-                "  </header>\n" +
-                "  <main>\n" +
-                "    <div class=\"sidebar\">\n" +
-                "      <div class=\"info-card\">\n" +
-                "        <h3>ℹ️ System Information</h3>\n" +
-                "        <div class=\"info-item\">\n" +
-                "          <span class=\"info-label\">Operating System:</span>\n" +
-                "          <span class=\"info-value\" id=\"osInfo\">Loading...</span>\n" +
-                "        </div>\n" +
-                "        <div class=\"info-item\">\n" +
-                "          <span class=\"info-label\">Hostname:</span>\n" +
-                "          <span class=\"info-value\" id=\"hostname\">Loading...</span>\n" +
-                "        </div>\n" +
-                "        <div class=\"info-item\">\n" +
-                "          <span class=\"info-label\">Uptime:</span>\n" +
-                "          <span class=\"info-value\" id=\"uptime\">Loading...</span>\n" +
-                "        </div>\n" +
-                "        <div class=\"info-item\">\n" +
-                "          <span class=\"info-label\">CPU Cores:</span>\n" +
-                "          <span class=\"info-value\" id=\"cpuCores\">--</span>\n" +
-                "        </div>\n" +
-                "      </div>\n" +
-                "      \n" +
-                "      <div class=\"ollama-card\">\n" +
-                "        <h3>🤖 Ollama Control</h3>\n" +
-                "        <div class=\"ollama-status\" id=\"ollamaStatus\">Status: Checking...</div>\n" +
-                "        <button class=\"ollama-btn btn-start\" onclick=\"controlOllama('start')\">Start Ollama</button>\n" +
-                "        <button class=\"ollama-btn btn-stop\" onclick=\"controlOllama('stop')\">Stop Ollama</button>\n" +
-                "        <button class=\"ollama-btn btn-restart\" onclick=\"controlOllama('restart')\">Restart Ollama</button>\n" +
-                "      </div>\n" +
-                "      \n" +
-                "      <div class=\"system-card\">\n" +
-                "        <h3>📊 Live Metrics</h3>\n" +
-                "        <div class=\"metric\">\n" +
-                "          <div class=\"metric-label\">CPU Usage</div>\n" +
-                "          <div class=\"metric-value\" id=\"cpuUsage\">--%</div>\n" +
-                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"cpuProgress\"></div></div>\n" +
-                "        </div>\n" +
-                "        <div class=\"metric\">\n" +
-                "          <div class=\"metric-label\">RAM Usage</div>\n" +
-                "          <div class=\"metric-value\" id=\"ramUsage\">-- / -- GB</div>\n" +
-                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"ramProgress\"></div></div>\n" +
-                "        </div>\n" +
-                "        <div class=\"metric\">\n" +
-                "          <div class=\"metric-label\">Disk Usage</div>\n" +
-                "          <div class=\"metric-value\" id=\"diskUsage\">-- / -- GB</div>\n" +
-                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"diskProgress\"></div></div>\n" +
-                "        </div>\n" +
-                "        <div class=\"metric\">\n" +
-                "          <div class=\"metric-label\">CPU Temperature</div>\n" +
-                "          <div class=\"metric-value\" id=\"cpuTemp\">--°C</div>\n" +
-                "        </div>\n" +
-                "      </div>\n" +
-                "      \n" +
-                "      <div class=\"info-card\">\n" +
-                "        <h3>🔗 About</h3>\n" +
-                "        <div style=\"text-align: center; margin-bottom: 10px;\">\n" +
-                "          <a href=\"https://github.com/Lejiww/Gpu-Monitor\" target=\"_blank\">GitHub Repository</a>\n" +
-                "        </div>\n" +
-                "        <div style=\"text-align: center; font-size: 11px; color: #7f8c8d; border-top: 1px solid #e0e0e0; padding-top: 8px;\">\n" +
-                "          Made with &hearts; by Lejiww\n" +
-                "        </div>\n" +
-                "      </div>\n" +
-                "    </div>\n" +
-                "    \n" +
-                "    <div class=\"content\">\n" +
-                "      <h2>🎮 GPU Statistics</h2>\n" +
-                "      <div id=\"gpuInfo\">\n" +
-                "        <p>Loading...</p>\n" +
-                "      </div>\n" +
-                "    </div>\n" +
-                "  </main>\n" +
-                "  \n" +
-                "  <script>\n" +
-                "    function controlOllama(action) {\n" +
-                "      fetch('/ollama/' + action)\n" +
-                "        .then(response => response.json())\n" +
-                "        .then(data => {\n" +
-                "          if (data.success) {\n" +
-                "            alert('Ollama ' + action + ' successful');\n" +
-                "            checkOllamaStatus();\n" +
-                "          } else {\n" +
-                "            alert('Ollama ' + action + ' failed');\n" +
-                "          }\n" +
-                "        })\n" +
-                "        .catch(error => alert('Error: ' + error));\n" +
-                "    }\n" +
-                "\n" +
-                "    function checkOllamaStatus() {\n" +
-                "      fetch('/ollama/status')\n" +
-                "        .then(response => response.text())\n" +
-                "        .then(status => {\n" +
-                "          document.getElementById('ollamaStatus').textContent = 'Status: ' + status;\n" +
-                "        })\n" +
-                "        .catch(error => {\n" +
-                "          document.getElementById('ollamaStatus').textContent = 'Status: Error';\n" +
-                "        });\n" +
-                "    }\n" +
-                "\n" +
-                "    function formatTemperature(temp) {\n" +
-                "      const tempNum = parseInt(temp);\n" +
-                "      let tempClass = 'temp-normal';\n" +
-                "      if (tempNum > 80) tempClass = 'temp-hot';\n" +
-                "      else if (tempNum > 65) tempClass = 'temp-warm';\n" +
-                "      return '<span class=\"gpu-temp ' + tempClass + '\">' + temp + '°C</span>';\n" +
-                "    }\n" +
-                "\n" +
-                "    function formatPowerConsumption(powerDraw, powerLimit) {\n" +
-                "      const drawNum = parseInt(powerDraw);\n" +
-                "      const limitNum = parseInt(powerLimit);\n" +
-                "      const percentage = limitNum > 0 ? (drawNum / limitNum) * 100 : 0;\n" +
-                "      \n" +
-                "      let powerClass = 'power-low';\n" +
-                "      if (percentage > 80) powerClass = 'power-high';\n" +
-                "      else if (percentage > 50) powerClass = 'power-medium';\n" +
-                "      \n" +
-                "      return '<span class=\"' + powerClass + '\">' + powerDraw + 'W / ' + powerLimit + 'W</span>';\n" +
-                "    }\n" +
-                "\n" +
-                "    function fetchGpuData() {\n" +
-                "      fetch('/update')\n" +
-                "        .then(function(response) {\n" +
-                "          return response.text();\n" +
-                "        })\n" +
-                "        .then(function(data) {\n" +
-                "          const rows = data.trim().split('\\n');\n" +
-                "          let tableHtml = '';\n" +
-                "          \n" +
-                "          for (let index = 0; index < rows.length; index++) {\n" +
-                "            const row = rows[index];\n" +
-                "            const parts = row.split(',');\n" +
-                "            \n" +
-                "            if (parts.length < 7) continue;\n" +
-                "            \n" +
-                "            const name = parts[0] || 'Unknown GPU';\n" +
-                "            const temp = parts[1] || '0';\n" +
-                "            const util = parts[2] || '0';\n" +
-                "            const memUsed = parts[3] || '0';\n" +
-                "            const memTotal = parts[4] || '0';\n" +
-                "            const powerDraw = parts[5] || '0';\n" +
-                "            const powerLimit = parts[6] || '0';\n" +
-                "            \n" +
-                "            tableHtml += '<tr>';\n" +
-                "            tableHtml += '<td><strong>GPU ' + index + '</strong><br>' + name + '</td>';\n" +
-                "            tableHtml += '<td>' + formatTemperature(temp) + '</td>';\n" +
-                "            tableHtml += '<td><strong>' + util + '%</strong></td>';\n" +
-                "            tableHtml += '<td>' + memUsed + ' MB / ' + memTotal + ' MB</td>';\n" +
-                "            tableHtml += '<td>' + formatPowerConsumption(powerDraw, powerLimit) + '</td>';\n" +
-                "            tableHtml += '</tr>';\n" +
-                "          }\n" +
-                "\n" +
-                "          document.getElementById('gpuInfo').innerHTML = '<table>' +\n" +
-                "            '<tr>' +\n" +
-                "            '<th>GPU</th>' +\n" +
-                "            '<th>Temperature</th>' +\n" +
-                "            '<th>Utilization</th>' +\n" +
-                "            '<th>Memory</th>' +\n" +
-                "            '<th>Power Consumption</th>' +\n" +
-                "            '</tr>' +\n" +
-                "            tableHtml +\n" +
-                "            '</table>';\n" +
-                "        })\n" +
-                "        .catch(function(error) {\n" +
-                "          document.getElementById('gpuInfo').innerHTML = '<p style=\"color:red;\">Error: ' + error.message + '</p>';\n" +
-                "        });\n" +
-                "    }\n" +
-                "\n" +
-                "    function fetchSystemData() {\n" +
-                "      fetch('/system')\n" +
-                "        .then(function(response) {\n" +
-                "          return response.json();\n" +
-                "        })\n" +
-                "        .then(function(data) {\n" +
-                "          if (data.cpuUsage !== undefined) {\n" +
-                "            document.getElementById('cpuUsage').textContent = data.cpuUsage + '%';\n" +
-                "            document.getElementById('cpuProgress').style.width = data.cpuUsage + '%';\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.ramUsed && data.ramTotal) {\n" +
-                "            document.getElementById('ramUsage').textContent = data.ramUsed + ' / ' + data.ramTotal + ' GB';\n" +
-                "            document.getElementById('ramProgress').style.width = data.ramPercentage + '%';\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.diskUsed && data.diskTotal) {\n" +
-                "            document.getElementById('diskUsage').textContent = data.diskUsed + ' / ' + data.diskTotal + ' GB';\n" +
-                "            document.getElementById('diskProgress').style.width = data.diskPercentage + '%';\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.cpuTemp !== undefined) {\n" +
-                "            document.getElementById('cpuTemp').textContent = data.cpuTemp + '°C';\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.osInfo) {\n" +
-                "            document.getElementById('osInfo').textContent = data.osInfo;\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.hostname) {\n" +
-                "            document.getElementById('hostname').textContent = data.hostname;\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.uptime) {\n" +
-                "            document.getElementById('uptime').textContent = data.uptime;\n" +
-                "          }\n" +
-                "          \n" +
-                "          if (data.cpuCores !== undefined) {\n" +
-                "            document.getElementById('cpuCores').textContent = data.cpuCores;\n" +
-                "          }\n" +
-                "        })\n" +
-                "        .catch(function(error) {\n" +
-                "          console.error('System error:', error);\n" +
-                "        });\n" +
-                "    }\n" +
-                "\n" +
-                "    console.log('Starting monitoring...');\n" +
-                "    fetchGpuData();\n" +
-                "    fetchSystemData();\n" +
-                "    checkOllamaStatus();\n" +
-                "    \n" +
-                "    setInterval(fetchGpuData, 2000);\n" +
-                "    setInterval(fetchSystemData, 2000);\n" +
-                "    setInterval(checkOllamaStatus, 5000);\n" +
-                "  </script>\n" +
-                "</body>\n" +
-                "</html>";
+    private static int parseInt(String value, int defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
     }
 
-    private void handleDebugPageRequest(BufferedWriter out) throws IOException {
-        String debugInfo = getDebugInfo();
-        String debugHtml = "<!DOCTYPE html><html><head><title>Debug</title></head><body><pre>" + debugInfo + "</pre></body></html>";
-        
-        out.write("HTTP/1.1 200 OK\r\n");
-        out.write("Content-Type: text/html; charset=UTF-8\r\n");
-        out.write("Content-Length: " + debugHtml.length() + "\r\n");
-        out.write("\r\n");
-        out.write(debugHtml);
-        out.flush();
+    private static long parseLong(String value, long defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value);
     }
 
     private String getDebugInfo() {
         return "System Debug - Basic Info\n" +
                "OS: " + System.getProperty("os.name") + "\n" +
-               "Java: " + System.getProperty("java.version");
+               "Java: " + System.getProperty("java.version") + "\n\n" +
+               Instrumentation.toText().replace("&", "&amp;").replace("<", "&lt;");
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Locale;
+
+/**
+ * Sampling cadence of one collector. The interval is the base one while someone is watching,
+ * the fast one for a while after a sample moved more than the volatility thresholds, and the
+ * idle one when there are neither recent requests nor stream subscribers. It is never shorter
+ * than the collector's minimum interval.
+ */
+final class CollectorSchedule {
+    /** Number of calm samples after which a fast schedule returns to its normal interval. */
+    private static final int FAST_HOLD_SAMPLES = 10;
+
+    private final String name;
+    private final long baseInterval;
+    private final long minInterval;
+    private final long fastInterval;
+    private final long idleInterval;
+    private volatile long effectiveInterval;
+    private volatile long lastRun;
+    private int fastSamplesLeft;
+
+    CollectorSchedule(String name, long baseInterval, long minInterval, long fastInterval, long idleInterval) {
+        this.name = name;
+        this.baseInterval = baseInterval;
+        this.minInterval = minInterval;
+        this.fastInterval = fastInterval;
+        this.idleInterval = idleInterval;
+        this.effectiveInterval = Math.max(minInterval, baseInterval);
+        Instrumentation.gauge("sampling." + name + ".intervalMillis", this::getEffectiveInterval);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getEffectiveInterval() {
+        return effectiveInterval;
+    }
+
+    /**
+     * Whether the collector should run now. A forced run (a stale snapshot requested, the
+     * first sample) still waits for the minimum interval, so bursts of requests cannot drive
+     * the collector faster than that.
+     */
+    boolean isDue(long now, boolean force) {
+        return now - lastRun >= (force ? minInterval : effectiveInterval);
+    }
+
+    long getNextDue() {
+        return lastRun + effectiveInterval;
+    }
+
+    void ran(long now) {
+        lastRun = now;
+    }
+
+    /**
+     * Picks the next interval after a sample of this collector.
+     *
+     * @param active whether anyone is watching
+     * @param moved  whether the sample moved more than the volatility thresholds
+     */
+    synchronized void adjust(boolean active, boolean moved) {
+        if (moved) {
+            fastSamplesLeft = FAST_HOLD_SAMPLES;
+        } else if (fastSamplesLeft > 0) {
+            fastSamplesLeft--;
+        }
+        long interval;
+        if (fastSamplesLeft > 0) {
+            interval = fastInterval;
+        } else if (!active) {
+            interval = idleInterval;
+        } else {
+            interval = baseInterval;
+        }
+        effectiveInterval = Math.max(minInterval, interval);
+    }
+
+    /** Leaves the idle interval at once, when someone starts watching again. */
+    synchronized void wake() {
+        if (fastSamplesLeft == 0) {
+            effectiveInterval = Math.max(minInterval, baseInterval);
+        }
+    }
+
+    String toJson() {
+        return "{\"intervalMillis\":" + effectiveInterval +
+            ",\"samplesPerMinute\":" + String.format(Locale.ROOT, "%.1f", 60000.0 / effectiveInterval) +
+            ",\"minIntervalMillis\":" + minInterval +
+            ",\"lastRun\":" + lastRun + "}";
+    }
+}
@@ -0,0 +1,78 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an external command to completion. {@link OllamaController} goes through this
+ * interface so that another implementation (or a fake service script) can stand in for
+ * {@code sudo service ollama}.
+ */
+@FunctionalInterface
+public interface CommandRunner {
+    int MAX_OUTPUT_BYTES = 64 * 1024;
+
+    Result run(String... command) throws IOException, InterruptedException;
+
+    /**
+     * Returns a runner that forks the command with stderr merged into stdout and kills it
+     * after {@code timeoutMillis}. Output goes through a temporary file so that waiting for
+     * the process does not need a second thread to drain the pipe.
+     */
+    static CommandRunner processRunner(long timeoutMillis) {
+        return command -> {
+            File output = File.createTempFile("gpumonitor-command", ".out");
+            try {
+                ProcessBuilder pb = new ProcessBuilder(command);
+                pb.redirectErrorStream(true);
+                pb.redirectOutput(output);
+                Process process = Instrumentation.start(pb);
+                boolean exited = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+                if (!exited) {
+                    process.destroyForcibly().waitFor();
+                }
+                String text;
+                try (InputStream in = Files.newInputStream(output.toPath())) {
+                    text = new String(in.readNBytes(MAX_OUTPUT_BYTES), StandardCharsets.UTF_8);
+                }
+                if (!exited) {
+                    return new Result(-1, text + "\nKilled after " + timeoutMillis + " ms");
+                }
+                return new Result(process.exitValue(), text);
+            } finally {
+                Files.deleteIfExists(output.toPath());
+            }
+        };
+    }
+
+    /** Splits a configured command prefix such as {@code "sudo service ollama"} on spaces. */
+    static String[] withArgument(String prefix, String argument) {
+        String[] parts = prefix.trim().split("\\s+");
+        String[] command = Arrays.copyOf(parts, parts.length + 1);
+        command[parts.length] = argument;
+        return command;
+    }
+
+    final class Result {
+        private final int exitCode;
+        private final String output;
+
+        public Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The embedded dashboards (the node page and the fleet page), each rendered once and kept as
+ * UTF-8 bytes together with a gzip variant and their ETags, so serving one is a single buffer
+ * write (or a 304).
+ */
+public final class DashboardPage {
+    private static final DashboardPage INSTANCE = new DashboardPage(generateHtmlPage());
+    private static final DashboardPage FLEET = new DashboardPage(FleetPage.generateHtmlPage());
+
+    private final byte[] bytes;
+    private final byte[] gzipBytes;
+    private final String etag;
+    private final String gzipEtag;
+
+    DashboardPage(String html) {
+        this.bytes = html.getBytes(StandardCharsets.UTF_8);
+        this.gzipBytes = gzip(bytes);
+        String hash = hash(bytes);
+        this.etag = "\"" + hash + "\"";
+        this.gzipEtag = "\"" + hash + "-gz\"";
+    }
+
+    public static DashboardPage get() {
+        return INSTANCE;
+    }
+
+    public static DashboardPage fleet() {
+        return FLEET;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public byte[] getGzipBytes() {
+        return gzipBytes;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getGzipEtag() {
+        return gzipEtag;
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header value against an entity tag.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String generateHtmlPage() {
+        return "<!DOCTYPE html>\n" +
+                "<html lang=\"fr\">\n" +
+                "<head>\n" +
+                "  <meta charset=\"UTF-8\">\n" +
+                "  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n" +
+                "  <title>GPU & System Monitor</title>\n" +
+                "  <style>\n" +
+                "    body { margin: 0; font-family: 'Segoe UI', sans-serif; background: #f4f6f9; color: #333; display: flex; flex-direction: column; min-height: 100vh; }\n" +
+                "    header { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; padding: 20px; text-align: center; font-size: 24px; font-weight: bold; box-shadow: 0 2px 10px rgba(0,0,0,0.1); }\n" +
+                "    main { flex: 1; display: flex; padding: 20px; gap: 20px; }\n" +
+                "    .sidebar { flex: 1; max-width: 280px; display: flex; flex-direction: column; gap: 15px; height: fit-content; }\n" +
+                "    .info-card, .settings-card, .system-card, .ollama-card { background: #fff; border-radius: 12px; padding: 20px; box-shadow: 0 4px 12px rgba(0,0,0,0.1); }\n" +
+                "    .info-card h3, .settings-card h3, .system-card h3, .ollama-card h3 { margin: 0 0 15px 0; font-size: 16px; color: #2c3e50; border-bottom: 2px solid #3498db; padding-bottom: 8px; }\n" +
+                "    .info-item { display: flex; justify-content: space-between; margin-bottom: 8px; font-size: 13px; }\n" +
+                "    .info-label { color: #7f8c8d; font-weight: 500; }\n" +
+                "    .info-value { font-weight: 600; text-align: right; color: #2c3e50; }\n" +
+                "    .metric { margin-bottom: 10px; padding: 8px 10px; background: #f8f9fa; border-radius: 6px; border-left: 3px solid #3498db; }\n" +
+                "    .metric-label { font-weight: 600; color: #2c3e50; font-size: 12px; }\n" +
+                "    .metric-value { font-size: 14px; color: #27ae60; margin-top: 2px; }\n" +
+                "    .progress-bar { width: 100%; height: 6px; background: #e0e0e0; border-radius: 3px; overflow: hidden; margin-top: 6px; }\n" +
+                "    .progress-fill { height: 100%; background: linear-gradient(90deg, #27ae60, #2ecc71); transition: width 0.3s ease; }\n" +
+                "    .ollama-btn { width: 100%; padding: 10px; margin: 5px 0; border: none; border-radius: 6px; cursor: pointer; font-weight: bold; }\n" +
+                "    .btn-start { background: #27ae60; color: white; }\n" +
+                "    .btn-stop { background: #e74c3c; color: white; }\n" +
+                "    .btn-restart { background: #f39c12; color: white; }\n" +
+                "    .ollama-status { margin-bottom: 10px; padding: 5px; background: #f8f9fa; border-radius: 4px; font-size: 12px; }\n" +
+                "    .ollama-models { margin-bottom: 10px; font-size: 12px; }\n" +
+                "    .ollama-model { padding: 4px 0; border-bottom: 1px solid #eee; }\n" +
+                "    .content { flex: 3; background: #fff; border-radius: 12px; padding: 25px; box-shadow: 0 4px 12px rgba(0,0,0,0.1); overflow-y: auto; }\n" +
+                "    .content h2 { margin-top: 0; font-size: 22px; margin-bottom: 20px; color: #2c3e50; }\n" +
+                "    table { width: 100%; border-collapse: collapse; margin-bottom: 20px; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 8px rgba(0,0,0,0.1); }\n" +
+                "    th, td { padding: 15px 12px; text-align: left; border-bottom: 1px solid #e0e0e0; }\n" +
+                "    th { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; font-weight: 600; font-size: 14px; }\n" +
+                "    tr:nth-child(even) { background-color: #f8f9fa; }\n" +
+                "    tr:hover { background-color: #e3f2fd; transition: background-color 0.2s; }\n" +
+                "    .gpu-temp { font-weight: bold; }\n" +
+                "    .temp-normal { color: #27ae60; }\n" +
+                "    .temp-warm { color: #f39c12; }\n" +
+                "    .temp-hot { color: #e74c3c; }\n" +
+                "    .power-low { color: #27ae60; font-weight: bold; }\n" +
+                "    .power-medium { color: #f39c12; font-weight: bold; }\n" +
+                "    .power-high { color: #e74c3c; font-weight: bold; }\n" +
+                "    .status-indicator { display: inline-block; width: 10px; height: 10px; border-radius: 50%; margin-right: 8px; background: #27ae60; animation: pulse 2s infinite; }\n" +
+                "    @keyframes pulse { 0% { opacity: 1; } 50% { opacity: 0.5; } 100% { opacity: 1; } }\n" +
+                "    @media (max-width: 768px) { main { flex-direction: column; } .sidebar { max-width: none; } }\n" +
+                "  </style>\n" +
+                "</head>\n" +
+                "<body>\n" +
+                "  <header>\n" +
+                "    <span class=\"status-indicator\"></span>\n" +
+                "    Real-time GPU & System Monitoring\n" +
+                "  </header>\n" +
+                "  <main>\n" +
+                "    <div class=\"sidebar\">\n" +
+                "      <div class=\"info-card\">\n" +
+                "        <h3>ℹ️ System Information</h3>\n" +
+                "        <div class=\"info-item\">\n" +
+                "          <span class=\"info-label\">Operating System:</span>\n" +
+                "          <span class=\"info-value\" id=\"osInfo\">Loading...</span>\n" +
+                "        </div>\n" +
+                "        <div class=\"info-item\">\n" +
+                "          <span class=\"info-label\">Hostname:</span>\n" +
+                "          <span class=\"info-value\" id=\"hostname\">Loading...</span>\n" +
+                "        </div>\n" +
+                "        <div class=\"info-item\">\n" +
+                "          <span class=\"info-label\">Uptime:</span>\n" +
+                "          <span class=\"info-value\" id=\"uptime\">Loading...</span>\n" +
+                "        </div>\n" +
+                "        <div class=\"info-item\">\n" +
+                "          <span class=\"info-label\">CPU Cores:</span>\n" +
+                "          <span class=\"info-value\" id=\"cpuCores\">--</span>\n" +
+                "        </div>\n" +
+                "      </div>\n" +
+                "      \n" +
+                "      <div class=\"ollama-card\">\n" +
+                "        <h3>🤖 Ollama Control</h3>\n" +
+                "        <div class=\"ollama-status\" id=\"ollamaStatus\">Status: Checking...</div>\n" +
+                "        <div class=\"ollama-models\" id=\"ollamaModels\"></div>\n" +
+                "        <button class=\"ollama-btn btn-start\" onclick=\"controlOllama('start')\">Start Ollama</button>\n" +
+                "        <button class=\"ollama-btn btn-stop\" onclick=\"controlOllama('stop')\">Stop Ollama</button>\n" +
+                "        <button class=\"ollama-btn btn-restart\" onclick=\"controlOllama('restart')\">Restart Ollama</button>\n" +
+                "      </div>\n" +
+                "      \n" +
+                "      <div class=\"system-card\">\n" +
+                "        <h3>📊 Live Metrics</h3>\n" +
+                "        <div class=\"metric\">\n" +
+                "          <div class=\"metric-label\">CPU Usage</div>\n" +
+                "          <div class=\"metric-value\" id=\"cpuUsage\">--%</div>\n" +
+                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"cpuProgress\"></div></div>\n" +
+                "        </div>\n" +
+                "        <div class=\"metric\">\n" +
+                "          <div class=\"metric-label\">RAM Usage</div>\n" +
+                "          <div class=\"metric-value\" id=\"ramUsage\">-- / -- GB</div>\n" +
+                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"ramProgress\"></div></div>\n" +
+                "        </div>\n" +
+                "        <div class=\"metric\" id=\"containerCpuMetric\" style=\"display: none;\">\n" +
+                "          <div class=\"metric-label\">Container CPU</div>\n" +
+                "          <div class=\"metric-value\" id=\"containerCpu\">--%</div>\n" +
+                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"containerCpuProgress\"></div></div>\n" +
+                "        </div>\n" +
+                "        <div class=\"metric\" id=\"containerRamMetric\" style=\"display: none;\">\n" +
+                "          <div class=\"metric-label\">Container RAM</div>\n" +
+                "          <div class=\"metric-value\" id=\"containerRam\">-- GB</div>\n" +
+                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"containerRamProgress\"></div></div>\n" +
+                "        </div>\n" +
+                "        <div class=\"metric\">\n" +
+                "          <div class=\"metric-label\">Disk Usage</div>\n" +
+                "          <div class=\"metric-value\" id=\"diskUsage\">-- / -- GB</div>\n" +
+                "          <div class=\"progress-bar\"><div class=\"progress-fill\" id=\"diskProgress\"></div></div>\n" +
+                "        </div>\n" +
+                "        <div class=\"metric\">\n" +
+                "          <div class=\"metric-label\">CPU Temperature</div>\n" +
+                "          <div class=\"metric-value\" id=\"cpuTemp\">--°C</div>\n" +
+                "        </div>\n" +
+                "      </div>\n" +
+                "      \n" +
+                "      <div class=\"info-card\">\n" +
+                "        <h3>🔗 About</h3>\n" +
+                "        <div style=\"text-align: center; margin-bottom: 10px;\">\n" +
+                "          <a href=\"https://github.com/Lejiww/Gpu-Monitor\" target=\"_blank\">GitHub Repository</a>\n" +
+                "        </div>\n" +
+                "        <div style=\"text-align: center; font-size: 11px; color: #7f8c8d; border-top: 1px solid #e0e0e0; padding-top: 8px;\">\n" +
+                "          Made with &hearts; by Lejiww\n" +
+                "        </div>\n" +
+                "      </div>\n" +
+                "    </div>\n" +
+                "    \n" +
+                "    <div class=\"content\">\n" +
+                "      <h2>🎮 GPU Statistics</h2>\n" +
+                "      <div id=\"gpuInfo\">\n" +
+                "        <p>Loading...</p>\n" +
+                "      </div>\n" +
+                "    </div>\n" +
+                "  </main>\n" +
+                "  \n" +
+                "  <script>\n" +
+                "    function controlOllama(action) {\n" +
+                "      document.getElementById('ollamaStatus').textContent = 'Status: ' + action + ' in progress...';\n" +
+                "      fetch('/ollama/' + action)\n" +
+                "        .then(response => response.json())\n" +
+                "        .then(data => waitForOllamaJob(data.location))\n" +
+                "        .catch(error => alert('Error: ' + error));\n" +
+                "    }\n" +
+                "\n" +
+                "    function waitForOllamaJob(location) {\n" +
+                "      fetch(location)\n" +
+                "        .then(response => response.json())\n" +
+                "        .then(job => {\n" +
+                "          if (job.state === 'queued' || job.state === 'running') {\n" +
+                "            setTimeout(() => waitForOllamaJob(location), 1000);\n" +
+                "            return;\n" +
+                "          }\n" +
+                "          if (job.success) {\n" +
+                "            alert('Ollama ' + job.action + ' successful');\n" +
+                "          } else {\n" +
+                "            alert('Ollama ' + job.action + ' failed (exit code ' + job.exitCode + ')\\n' + job.output);\n" +
+                "          }\n" +
+                "          checkOllamaStatus();\n" +
+                "        })\n" +
+                "        .catch(error => alert('Error: ' + error));\n" +
+                "    }\n" +
+                "\n" +
+                "    function checkOllamaStatus() {\n" +
+                "      fetch('/ollama/status')\n" +
+                "        .then(response => response.text())\n" +
+                "        .then(renderOllamaStatus)\n" +
+                "        .catch(error => {\n" +
+                "          document.getElementById('ollamaStatus').textContent = 'Status: Error';\n" +
+                "        });\n" +
+                "    }\n" +
+                "\n" +
+                "    function renderOllamaStatus(status) {\n" +
+                "      document.getElementById('ollamaStatus').textContent = 'Status: ' + status;\n" +
+                "    }\n" +
+                "\n" +
+                "    function renderOllamaModels(runtime) {\n" +
+                "      const container = document.getElementById('ollamaModels');\n" +
+                "      if (!runtime || !runtime.api) {\n" +
+                "        container.innerHTML = '';\n" +
+                "        return;\n" +
+                "      }\n" +
+                "      if (runtime.models.length === 0) {\n" +
+                "        container.innerHTML = '<div class=\"ollama-model\">No model loaded (' + runtime.installedModels + ' installed)</div>';\n" +
+                "        return;\n" +
+                "      }\n" +
+                "      container.innerHTML = runtime.models.map(model => {\n" +
+                "        const gpus = model.gpus.map(gpu => gpu.index !== undefined\n" +
+                "          ? 'GPU ' + gpu.index + ': ' + gpu.memoryMiB + ' / ' + gpu.gpuMemoryTotalMiB + ' MB' + (gpu.estimated ? ' (est.)' : '')\n" +
+                "          : gpu.uuid + ': ' + gpu.memoryMiB + ' MB').join(', ');\n" +
+                "        const expires = model.expiresAt ? ' - unloads ' + new Date(model.expiresAt).toLocaleTimeString() : '';\n" +
+                "        return '<div class=\"ollama-model\"><strong>' + escapeHtml(model.name) + '</strong> ' +\n" +
+                "          (model.vramBytes / 1073741824).toFixed(1) + ' GB VRAM' + expires +\n" +
+                "          (gpus ? '<br>' + gpus : '') + '</div>';\n" +
+                "      }).join('');\n" +
+                "    }\n" +
+                "\n" +
+                "    function escapeHtml(text) {\n" +
+                "      return String(text).replace(/[&<>\"]/g, c => ({'&': '&amp;', '<': '&lt;', '>': '&gt;', '\"': '&quot;'})[c]);\n" +
+                "    }\n" +
+                "\n" +
+                "    function formatTemperature(temp) {\n" +
+                "      const tempNum = parseInt(temp);\n" +
+                "      let tempClass = 'temp-normal';\n" +
+                "      if (tempNum > 80) tempClass = 'temp-hot';\n" +
+                "      else if (tempNum > 65) tempClass = 'temp-warm';\n" +
+                "      return '<span class=\"gpu-temp ' + tempClass + '\">' + temp + '°C</span>';\n" +
+                "    }\n" +
+                "\n" +
+                "    function formatPowerConsumption(powerDraw, powerLimit) {\n" +
+                "      const drawNum = parseInt(powerDraw);\n" +
+                "      const limitNum = parseInt(powerLimit);\n" +
+                "      const percentage = limitNum > 0 ? (drawNum / limitNum) * 100 : 0;\n" +
+                "      \n" +
+                "      let powerClass = 'power-low';\n" +
+                "      if (percentage > 80) powerClass = 'power-high';\n" +
+                "      else if (percentage > 50) powerClass = 'power-medium';\n" +
+                "      \n" +
+                "      return '<span class=\"' + powerClass + '\">' + powerDraw + 'W / ' + powerLimit + 'W</span>';\n" +
+                "    }\n" +
+                "\n" +
+                "    let gpuCells = [];\n" +
+                "\n" +
+                "    function renderGpuData(data) {\n" +
+                "      const rows = data.trim().split('\\n').map(row => row.split(',')).filter(parts => parts.length >= 7);\n" +
+                "      const container = document.getElementById('gpuInfo');\n" +
+                "      if (gpuCells.length !== rows.length || !container.querySelector('table')) {\n" +
+                "        buildGpuTable(container, rows.length);\n" +
+                "      }\n" +
+                "\n" +
+                "      // Only the cells whose content changed are written, the table itself is kept\n" +
+                "      for (let index = 0; index < rows.length; index++) {\n" +
+                "        const parts = rows[index];\n" +
+                "        const cells = gpuCells[index];\n" +
+                "        setCell(cells[0], '<strong>GPU ' + index + '</strong><br>' + escapeHtml(parts[0] || 'Unknown GPU'));\n" +
+                "        setCell(cells[1], formatTemperature(parts[1] || '0'));\n" +
+                "        setCell(cells[2], '<strong>' + (parts[2] || '0') + '%</strong>');\n" +
+                "        setCell(cells[3], (parts[3] || '0') + ' MB / ' + (parts[4] || '0') + ' MB');\n" +
+                "        setCell(cells[4], formatPowerConsumption(parts[5] || '0', parts[6] || '0'));\n" +
+                "      }\n" +
+                "    }\n" +
+                "\n" +
+                "    function buildGpuTable(container, count) {\n" +
+                "      const table = document.createElement('table');\n" +
+                "      table.innerHTML = '<tr><th>GPU</th><th>Temperature</th><th>Utilization</th><th>Memory</th><th>Power Consumption</th></tr>';\n" +
+                "      gpuCells = [];\n" +
+                "      for (let index = 0; index < count; index++) {\n" +
+                "        const row = table.insertRow();\n" +
+                "        const cells = [];\n" +
+                "        for (let column = 0; column < 5; column++) {\n" +
+                "          cells.push(row.insertCell());\n" +
+                "        }\n" +
+                "        gpuCells.push(cells);\n" +
+                "      }\n" +
+                "      container.replaceChildren(table);\n" +
+                "    }\n" +
+                "\n" +
+                "    function setCell(cell, html) {\n" +
+                "      if (cell.lastHtml !== html) {\n" +
+                "        cell.lastHtml = html;\n" +
+                "        cell.innerHTML = html;\n" +
+                "      }\n" +
+                "    }\n" +
+                "\n" +
+                "    function renderSystemData(data) {\n" +
+                "      if (data.cpuUsage !== undefined) {\n" +
+                "        document.getElementById('cpuUsage').textContent = data.cpuUsage + '%';\n" +
+                "        document.getElementById('cpuProgress').style.width = data.cpuUsage + '%';\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.ramUsed && data.ramTotal) {\n" +
+                "        document.getElementById('ramUsage').textContent = data.ramUsed + ' / ' + data.ramTotal + ' GB';\n" +
+                "        document.getElementById('ramProgress').style.width = data.ramPercentage + '%';\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.container) {\n" +
+                "        const c = data.container;\n" +
+                "        document.getElementById('containerCpuMetric').style.display = '';\n" +
+                "        document.getElementById('containerRamMetric').style.display = '';\n" +
+                "        document.getElementById('containerCpu').textContent = c.cpuCoresUsed + (c.cpuLimitCores !== null ? ' / ' + c.cpuLimitCores : '') + ' cores (' + c.cpuUsage + '%)' + (c.cpuThrottledPercentage > 0 ? ', throttled ' + c.cpuThrottledPercentage + '%' : '');\n" +
+                "        document.getElementById('containerCpuProgress').style.width = c.cpuUsage + '%';\n" +
+                "        document.getElementById('containerRam').textContent = c.ramUsed + (c.ramLimit !== null ? ' / ' + c.ramLimit : '') + ' GB';\n" +
+                "        document.getElementById('containerRamProgress').style.width = c.ramPercentage + '%';\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.diskUsed && data.diskTotal) {\n" +
+                "        document.getElementById('diskUsage').textContent = data.diskUsed + ' / ' + data.diskTotal + ' GB';\n" +
+                "        document.getElementById('diskProgress').style.width = data.diskPercentage + '%';\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.cpuTemp !== undefined) {\n" +
+                "        document.getElementById('cpuTemp').textContent = data.cpuTemp + '°C';\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.osInfo) {\n" +
+                "        document.getElementById('osInfo').textContent = data.osInfo;\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.hostname) {\n" +
+                "        document.getElementById('hostname').textContent = data.hostname;\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.uptime) {\n" +
+                "        document.getElementById('uptime').textContent = data.uptime;\n" +
+                "      }\n" +
+                "      \n" +
+                "      if (data.cpuCores !== undefined) {\n" +
+                "        document.getElementById('cpuCores').textContent = data.cpuCores;\n" +
+                "      }\n" +
+                "    }\n" +
+                "\n" +
+                "    let snapshotVersion = -1;\n" +
+                "\n" +
+                "    function renderSnapshot(snapshot) {\n" +
+                "      snapshotVersion = snapshot.sequence;\n" +
+                "      renderGpuData(snapshot.gpu);\n" +
+                "      renderSystemData(snapshot.system);\n" +
+                "      renderOllamaStatus(snapshot.ollama);\n" +
+                "      renderOllamaModels(snapshot.ollamaRuntime);\n" +
+                "    }\n" +
+                "\n" +
+                "    // One request per cycle; the server answers 304 while the version is unchanged\n" +
+                "    function pollSnapshot() {\n" +
+                "      fetch('/snapshot?since=' + snapshotVersion)\n" +
+                "        .then(response => {\n" +
+                "          if (response.status === 304) return null;\n" +
+                "          if (!response.ok) throw new Error('HTTP ' + response.status);\n" +
+                "          return response.json();\n" +
+                "        })\n" +
+                "        .then(snapshot => {\n" +
+                "          if (snapshot) renderSnapshot(snapshot);\n" +
+                "        })\n" +
+                "        .catch(error => {\n" +
+                "          document.getElementById('gpuInfo').innerHTML = '<p style=\"color:red;\">Error: ' + escapeHtml(error.message) + '</p>';\n" +
+                "        })\n" +
+                "        .finally(() => setTimeout(pollSnapshot, 2000));\n" +
+                "    }\n" +
+                "\n" +
+                "    console.log('Starting monitoring...');\n" +
+                "    if (window.EventSource) {\n" +
+                "      const source = new EventSource('/stream');\n" +
+                "      source.addEventListener('snapshot', function(event) {\n" +
+                "        renderSnapshot(JSON.parse(event.data));\n" +
+                "      });\n" +
+                "    } else {\n" +
+                "      pollSnapshot();\n" +
+                "    }\n" +
+                "  </script>\n" +
+                "</body>\n" +
+                "</html>";
+    }
+}
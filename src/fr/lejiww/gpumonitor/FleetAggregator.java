@@ -0,0 +1,273 @@
+package fr.lejiww.gpumonitor;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Aggregator mode: polls the {@code /binary} snapshot of every peer monitor and merges the
+ * latest ones into a fleet-wide view for {@code /fleet}.
+ *
+ * <p>Requests are asynchronous, so one poll round costs no thread per peer, and each has its
+ * own timeout. A peer is never polled again while its previous request is pending, so a slow
+ * node cannot pile up requests or delay the others. After {@code failureThreshold} failures
+ * in a row its circuit opens: it is skipped for {@code cooldownMillis}, then a single trial
+ * request decides whether it closes again.
+ *
+ * <p>Totals only include nodes that are up, or whose last snapshot is younger than
+ * {@code staleMillis} while their circuit is still closed. The others are reported as stale.
+ */
+public final class FleetAggregator {
+    private final List<Peer> peers = new ArrayList<>();
+    private final long intervalMillis;
+    private final Duration timeout;
+    private final int failureThreshold;
+    private final long cooldownMillis;
+    private final long staleMillis;
+    private final HttpClient client;
+    private final ExecutorService clientExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    public FleetAggregator(List<URI> peerUris, long intervalMillis, long timeoutMillis,
+                           int failureThreshold, long cooldownMillis, long staleMillis) {
+        for (URI uri : peerUris) {
+            peers.add(new Peer(uri));
+        }
+        this.intervalMillis = intervalMillis;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownMillis;
+        this.staleMillis = staleMillis;
+        // Responses are small and decoded without parsing text, a few threads serve hundreds of peers
+        this.clientExecutor = Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "fleet-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .executor(clientExecutor)
+            .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fleet-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Instrumentation.gauge("fleet.peers", peers::size);
+        Instrumentation.gauge("fleet.peers.up", () -> count(Peer::isUp));
+        Instrumentation.gauge("fleet.peers.open", () -> count(peer -> peer.getState().equals("open")));
+    }
+
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::pollAll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println("Fleet aggregator started (" + peers.size() + " peers, interval " + intervalMillis + " ms)");
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    private void pollAll() {
+        long now = System.currentTimeMillis();
+        for (Peer peer : peers) {
+            if (peer.tryAcquire(now)) {
+                poll(peer);
+            }
+        }
+    }
+
+    private void poll(Peer peer) {
+        long started = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(peer.binaryUri).timeout(timeout).GET().build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+            long now = System.currentTimeMillis();
+            long latency = System.nanoTime() - started;
+            if (error != null) {
+                peer.failed(error.getClass().getSimpleName() + (error.getMessage() == null ? "" : ": " + error.getMessage()), now);
+            } else if (response.statusCode() != 200) {
+                peer.failed("HTTP " + response.statusCode(), now);
+            } else {
+                try {
+                    peer.succeeded(BinaryDecoder.decodeSnapshot(ByteBuffer.wrap(response.body())), latency, now);
+                } catch (RuntimeException e) {
+                    peer.failed("Invalid response: " + e.getMessage(), now);
+                }
+            }
+            Instrumentation.histogram("fleet peer").record(latency, !peer.isUp());
+        });
+    }
+
+    private int count(Predicate<Peer> predicate) {
+        int n = 0;
+        for (Peer peer : peers) {
+            if (predicate.test(peer)) n++;
+        }
+        return n;
+    }
+
+    /** The merged fleet view: totals over fresh nodes, then every peer with its state and last snapshot. */
+    public String toJson() {
+        long now = System.currentTimeMillis();
+        StringBuilder nodes = new StringBuilder(256 + peers.size() * 768);
+        int up = 0;
+        int stale = 0;
+        int gpuCount = 0;
+        double memoryUsed = 0;
+        double memoryTotal = 0;
+        double powerDraw = 0;
+        double utilization = 0;
+        for (Peer peer : peers) {
+            BinaryDecoder.Snapshot snapshot;
+            boolean fresh;
+            synchronized (peer) {
+                snapshot = peer.latest;
+                if (nodes.length() > 0) nodes.append(',');
+                nodes.append("{\"url\":").append(Json.quote(peer.uri.toString()))
+                     .append(",\"state\":").append(Json.quote(peer.getState()))
+                     .append(",\"failures\":").append(peer.consecutiveFailures)
+                     .append(",\"error\":").append(peer.lastError == null ? "null" : Json.quote(peer.lastError))
+                     .append(",\"latencyMs\":").append(format(peer.latencyNanos / 1e6));
+                if (peer.isUp()) up++;
+                fresh = peer.isFresh(now);
+            }
+            if (snapshot == null) {
+                nodes.append('}');
+                continue;
+            }
+            if (!fresh) stale++;
+            nodes.append(",\"stale\":").append(!fresh)
+                 .append(",\"ageMillis\":").append(now - snapshot.timestamp)
+                 .append(",\"hostname\":").append(Json.quote(snapshot.hostname))
+                 .append(",\"sequence\":").append(snapshot.sequence)
+                 .append(",\"system\":{\"cpuUsage\":").append(format(snapshot.cpuUsage))
+                 .append(",\"cpuTemp\":").append(format(snapshot.cpuTemp))
+                 .append(",\"ramUsed\":").append(format(snapshot.ramUsed))
+                 .append(",\"ramTotal\":").append(format(snapshot.ramTotal))
+                 .append(",\"ramPercentage\":").append(format(snapshot.ramPercentage))
+                 .append(",\"diskPercentage\":").append(format(snapshot.diskPercentage))
+                 .append("},\"gpus\":[");
+            for (int i = 0; i < snapshot.gpus.length; i++) {
+                BinaryDecoder.Gpu gpu = snapshot.gpus[i];
+                if (i > 0) nodes.append(',');
+                nodes.append("{\"index\":").append(gpu.index)
+                     .append(",\"name\":").append(Json.quote(gpu.name))
+                     .append(",\"uuid\":").append(Json.quote(gpu.uuidString()))
+                     .append(",\"temperature\":").append(format(gpu.temperature))
+                     .append(",\"utilization\":").append(format(gpu.utilization))
+                     .append(",\"memoryUsed\":").append(format(gpu.memoryUsed))
+                     .append(",\"memoryTotal\":").append(format(gpu.memoryTotal))
+                     .append(",\"powerDraw\":").append(format(gpu.powerDraw))
+                     .append(",\"powerLimit\":").append(format(gpu.powerLimit))
+                     .append('}');
+                if (!fresh) continue;
+                gpuCount++;
+                memoryUsed += gpu.memoryUsed;
+                memoryTotal += gpu.memoryTotal;
+                powerDraw += gpu.powerDraw;
+                utilization += gpu.utilization;
+            }
+            nodes.append("]}");
+        }
+        return "{\"timestamp\":" + now +
+            ",\"totals\":{\"nodes\":" + peers.size() +
+            ",\"nodesUp\":" + up +
+            ",\"nodesStale\":" + stale +
+            ",\"gpus\":" + gpuCount +
+            ",\"gpuMemoryUsed\":" + format(memoryUsed) +
+            ",\"gpuMemoryTotal\":" + format(memoryTotal) +
+            ",\"powerDraw\":" + format(powerDraw) +
+            ",\"averageUtilization\":" + format(gpuCount == 0 ? 0 : utilization / gpuCount) +
+            "},\"nodes\":[" + nodes + "]}";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    /** Poll and circuit-breaker state of one peer; guarded by the peer's monitor. */
+    private final class Peer {
+        private final URI uri;
+        private final URI binaryUri;
+        private boolean inFlight;
+        private boolean open;
+        private boolean halfOpen;
+        private long openUntil;
+        private int consecutiveFailures;
+        private String lastError;
+        private long latencyNanos;
+        private long receivedAt;
+        private BinaryDecoder.Snapshot latest;
+
+        Peer(URI uri) {
+            String base = uri.toString();
+            this.uri = uri;
+            this.binaryUri = URI.create((base.endsWith("/") ? base.substring(0, base.length() - 1) : base) + "/binary");
+        }
+
+        /** Whether a request should be sent now; if so the peer is marked in flight. */
+        synchronized boolean tryAcquire(long now) {
+            if (inFlight) return false;
+            if (open) {
+                if (now < openUntil) return false;
+                halfOpen = true;
+            }
+            inFlight = true;
+            return true;
+        }
+
+        synchronized void succeeded(BinaryDecoder.Snapshot snapshot, long latencyNanos, long now) {
+            inFlight = false;
+            open = false;
+            halfOpen = false;
+            consecutiveFailures = 0;
+            lastError = null;
+            this.latencyNanos = latencyNanos;
+            this.latest = snapshot;
+            this.receivedAt = now;
+        }
+
+        synchronized void failed(String error, long now) {
+            inFlight = false;
+            consecutiveFailures++;
+            lastError = error;
+            if (halfOpen || consecutiveFailures >= failureThreshold) {
+                if (!open) {
+                    System.err.println("Fleet peer " + uri + " unreachable, pausing polls for " + cooldownMillis + " ms: " + error);
+                }
+                open = true;
+                halfOpen = false;
+                openUntil = now + cooldownMillis;
+            }
+        }
+
+        synchronized boolean isUp() {
+            return latest != null && consecutiveFailures == 0;
+        }
+
+        /** Whether the last snapshot still counts towards the totals. */
+        synchronized boolean isFresh(long now) {
+            if (latest == null || open) return false;
+            return consecutiveFailures == 0 || now - receivedAt <= staleMillis;
+        }
+
+        synchronized String getState() {
+            if (open) return halfOpen ? "half-open" : "open";
+            if (latest == null) return consecutiveFailures > 0 ? "failing" : "unknown";
+            return consecutiveFailures > 0 ? "failing" : "up";
+        }
+    }
+}
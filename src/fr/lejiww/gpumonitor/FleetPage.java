@@ -0,0 +1,112 @@
+package fr.lejiww.gpumonitor;
+
+/**
+ * The fleet dashboard served on {@code /fleet} in aggregator mode. It polls
+ * {@code /fleet/snapshot} and lists every peer with its GPUs.
+ */
+final class FleetPage {
+
+    private FleetPage() {
+    }
+
+    static String generateHtmlPage() {
+        return "<!DOCTYPE html>\n" +
+                "<html lang=\"en\">\n" +
+                "<head>\n" +
+                "  <meta charset=\"UTF-8\">\n" +
+                "  <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n" +
+                "  <title>GPU Fleet Monitor</title>\n" +
+                "  <style>\n" +
+                "    body { margin: 0; font-family: 'Segoe UI', sans-serif; background: #f4f6f9; color: #333; }\n" +
+                "    header { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; padding: 20px; text-align: center; font-size: 24px; font-weight: bold; box-shadow: 0 2px 10px rgba(0,0,0,0.1); }\n" +
+                "    main { padding: 20px; }\n" +
+                "    .totals { display: flex; flex-wrap: wrap; gap: 15px; margin-bottom: 20px; }\n" +
+                "    .total { flex: 1; min-width: 140px; background: #fff; border-radius: 12px; padding: 15px 20px; box-shadow: 0 4px 12px rgba(0,0,0,0.1); }\n" +
+                "    .total-label { font-size: 12px; color: #7f8c8d; font-weight: 600; }\n" +
+                "    .total-value { font-size: 20px; color: #2c3e50; font-weight: bold; margin-top: 4px; }\n" +
+                "    table { width: 100%; border-collapse: collapse; background: #fff; border-radius: 8px; overflow: hidden; box-shadow: 0 2px 8px rgba(0,0,0,0.1); }\n" +
+                "    th, td { padding: 10px 12px; text-align: left; border-bottom: 1px solid #e0e0e0; font-size: 14px; }\n" +
+                "    th { background: linear-gradient(135deg, #2c3e50, #34495e); color: white; font-weight: 600; }\n" +
+                "    .node td { background: #ecf0f1; font-weight: 600; }\n" +
+                "    .state-up { color: #27ae60; }\n" +
+                "    .state-failing, .state-half-open { color: #f39c12; }\n" +
+                "    .state-open, .state-unknown { color: #e74c3c; }\n" +
+                "    .temp-warm { color: #f39c12; font-weight: bold; }\n" +
+                "    .temp-hot { color: #e74c3c; font-weight: bold; }\n" +
+                "  </style>\n" +
+                "</head>\n" +
+                "<body>\n" +
+                "  <header>GPU Fleet</header>\n" +
+                "  <main>\n" +
+                "    <div class=\"totals\" id=\"totals\"></div>\n" +
+                "    <table>\n" +
+                "      <thead><tr><th>Node / GPU</th><th>Temperature</th><th>Utilization</th><th>Memory</th><th>Power</th></tr></thead>\n" +
+                "      <tbody id=\"nodes\"><tr><td colspan=\"5\">Loading...</td></tr></tbody>\n" +
+                "    </table>\n" +
+                "  </main>\n" +
+                "\n" +
+                "  <script>\n" +
+                "    function escapeHtml(text) {\n" +
+                "      return String(text).replace(/[&<>\"]/g, c => ({'&': '&amp;', '<': '&lt;', '>': '&gt;', '\"': '&quot;'})[c]);\n" +
+                "    }\n" +
+                "\n" +
+                "    function temperatureClass(temp) {\n" +
+                "      return temp > 80 ? 'temp-hot' : temp > 65 ? 'temp-warm' : '';\n" +
+                "    }\n" +
+                "\n" +
+                "    function renderTotals(totals) {\n" +
+                "      const items = [\n" +
+                "        ['Nodes up', totals.nodesUp + ' / ' + totals.nodes],\n" +
+                "        ['Stale nodes', totals.nodesStale],\n" +
+                "        ['GPUs', totals.gpus],\n" +
+                "        ['Average utilization', totals.averageUtilization + '%'],\n" +
+                "        ['GPU memory', (totals.gpuMemoryUsed / 1024).toFixed(1) + ' / ' + (totals.gpuMemoryTotal / 1024).toFixed(1) + ' GB'],\n" +
+                "        ['Power draw', (totals.powerDraw / 1000).toFixed(2) + ' kW']\n" +
+                "      ];\n" +
+                "      document.getElementById('totals').innerHTML = items.map(item =>\n" +
+                "        '<div class=\"total\"><div class=\"total-label\">' + item[0] + '</div><div class=\"total-value\">' + item[1] + '</div></div>').join('');\n" +
+                "    }\n" +
+                "\n" +
+                "    function renderNodes(nodes) {\n" +
+                "      let html = '';\n" +
+                "      for (const node of nodes) {\n" +
+                "        const name = node.hostname ? escapeHtml(node.hostname) + ' <small>' + escapeHtml(node.url) + '</small>' : escapeHtml(node.url);\n" +
+                "        let detail = '<span class=\"state-' + node.state + '\">' + node.state + '</span>';\n" +
+                "        if (node.stale) {\n" +
+                "          detail += ' &middot; stale, not in totals';\n" +
+                "        }\n" +
+                "        if (node.system) {\n" +
+                "          detail += ' &middot; CPU ' + node.system.cpuUsage + '% &middot; RAM ' + node.system.ramPercentage + '%';\n" +
+                "        }\n" +
+                "        if (node.error) {\n" +
+                "          detail += ' &middot; ' + escapeHtml(node.error);\n" +
+                "        }\n" +
+                "        html += '<tr class=\"node\"><td colspan=\"5\">' + name + ' &middot; ' + detail + '</td></tr>';\n" +
+                "        for (const gpu of node.gpus || []) {\n" +
+                "          html += '<tr><td>GPU ' + gpu.index + ' - ' + escapeHtml(gpu.name) + '</td>' +\n" +
+                "            '<td class=\"' + temperatureClass(gpu.temperature) + '\">' + gpu.temperature + '°C</td>' +\n" +
+                "            '<td>' + gpu.utilization + '%</td>' +\n" +
+                "            '<td>' + gpu.memoryUsed + ' / ' + gpu.memoryTotal + ' MB</td>' +\n" +
+                "            '<td>' + gpu.powerDraw + 'W / ' + gpu.powerLimit + 'W</td></tr>';\n" +
+                "        }\n" +
+                "      }\n" +
+                "      document.getElementById('nodes').innerHTML = html;\n" +
+                "    }\n" +
+                "\n" +
+                "    function refresh() {\n" +
+                "      fetch('/fleet/snapshot')\n" +
+                "        .then(response => response.json())\n" +
+                "        .then(fleet => {\n" +
+                "          renderTotals(fleet.totals);\n" +
+                "          renderNodes(fleet.nodes);\n" +
+                "        })\n" +
+                "        .catch(error => console.error('Fleet error:', error))\n" +
+                "        .finally(() => setTimeout(refresh, 2000));\n" +
+                "    }\n" +
+                "\n" +
+                "    refresh();\n" +
+                "  </script>\n" +
+                "</body>\n" +
+                "</html>";
+    }
+}
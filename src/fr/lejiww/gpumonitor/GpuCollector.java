@@ -0,0 +1,35 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Source of per-device GPU readings for the {@link MetricsSampler}. {@link #collect()} is
+ * called once per sample on the sampler thread and returns one {@link GpuSample} per GPU,
+ * or an empty list when no reading is available.
+ */
+public interface GpuCollector {
+    default void start() {
+    }
+
+    List<GpuSample> collect();
+
+    /**
+     * Whether {@link #collectComputeApps()} can list the processes using the GPUs; when it
+     * cannot, {@link GpuProcessCollector} asks nvidia-smi.
+     */
+    default boolean listsComputeApps() {
+        return false;
+    }
+
+    /**
+     * Returns the GPU memory in MiB held by each compute process, by pid then GPU UUID, or
+     * {@code null} when the reading failed. Called on the process collector's thread.
+     */
+    default Map<Integer, Map<String, Long>> collectComputeApps() {
+        return null;
+    }
+
+    default void stop() {
+    }
+}
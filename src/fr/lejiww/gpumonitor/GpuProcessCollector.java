@@ -0,0 +1,225 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists the processes holding GPU memory, from {@code nvidia-smi --query-compute-apps} or
+ * from NVML when that is the GPU backend, and joins each one with what {@code /proc/<pid>}
+ * says about it. It is the only collector that lists GPU processes: {@link OllamaCollector}
+ * reads its latest sample. The command line and owner do
+ * not change while a process runs, so they are read once per pid and start time; CPU time and
+ * RSS are re-read on every poll, and CPU use is the difference with the previous poll. Runs on
+ * its own thread and keeps the latest {@link GpuProcessSample}.
+ */
+public class GpuProcessCollector {
+    // USER_HZ, the unit of /proc/<pid>/stat times, is 100 on every architecture Linux exposes
+    private static final double CLOCK_TICKS_PER_SECOND = 100;
+    private static final int MAX_COMMAND_LENGTH = 512;
+
+    private final String nvidiaSmiCommand;
+    private final Path procRoot;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private volatile GpuCollector gpuCollector;
+    // Only touched by the collector thread
+    private final Map<Integer, TrackedProcess> tracked = new HashMap<>();
+    private volatile GpuProcessSample latest = GpuProcessSample.EMPTY;
+
+    public GpuProcessCollector(String nvidiaSmiCommand, Path procRoot, long intervalMillis) {
+        this.nvidiaSmiCommand = nvidiaSmiCommand;
+        this.procRoot = procRoot;
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gpu-process-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lists processes through {@code gpus} when it can, instead of running nvidia-smi. Call
+     * before {@link #start()}.
+     */
+    public void setGpuCollector(GpuCollector gpus) {
+        this.gpuCollector = gpus;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public GpuProcessSample getLatest() {
+        return latest;
+    }
+
+    private void refresh() {
+        long started = System.nanoTime();
+        try {
+            Map<Integer, Map<String, Long>> memoryByPid = queryComputeApps();
+            latest = collect(memoryByPid);
+            Instrumentation.histogram("collector processes").recordSince(started, memoryByPid == null);
+        } catch (RuntimeException e) {
+            System.err.println("Error collecting GPU processes: " + e.getMessage());
+            Instrumentation.histogram("collector processes").recordSince(started, true);
+        }
+    }
+
+    private GpuProcessSample collect(Map<Integer, Map<String, Long>> memoryByPid) {
+        long now = System.currentTimeMillis();
+        if (memoryByPid == null) {
+            return new GpuProcessSample(now, false, latest.getProcesses());
+        }
+        long nanos = System.nanoTime();
+        List<GpuProcessSample.GpuProcess> processes = new ArrayList<>(memoryByPid.size());
+        for (Map.Entry<Integer, Map<String, Long>> entry : memoryByPid.entrySet()) {
+            int pid = entry.getKey();
+            TrackedProcess process = tracked.get(pid);
+            if (process == null) {
+                process = new TrackedProcess(new ProcPidReader(procRoot, pid));
+                tracked.put(pid, process);
+            }
+            ProcPidReader reader = process.reader;
+            if (!reader.sample()) {
+                // Exited since nvidia-smi listed it, or not visible from this PID namespace
+                processes.add(new GpuProcessSample.GpuProcess(pid, "", "", '?', 0, 0, 0, entry.getValue()));
+                continue;
+            }
+            if (process.startTicks != reader.getStartTicks()) {
+                // First sight of this pid, or the pid was reused by a new process
+                process.identify(pid, reader.getStartTicks());
+            }
+            long ticks = reader.getCpuTicks();
+            double cpuPercent = 0;
+            if (process.sampledAt != 0 && nanos > process.sampledAt) {
+                double seconds = (nanos - process.sampledAt) / 1e9;
+                cpuPercent = (ticks - process.cpuTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+            }
+            process.cpuTicks = ticks;
+            process.sampledAt = nanos;
+            processes.add(new GpuProcessSample.GpuProcess(pid, process.user, process.command, reader.getState(),
+                reader.getRssKb(), ticks / CLOCK_TICKS_PER_SECOND, Math.max(0, cpuPercent), entry.getValue()));
+        }
+
+        // Forget processes that no longer hold GPU memory
+        Iterator<Map.Entry<Integer, TrackedProcess>> iterator = tracked.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, TrackedProcess> entry = iterator.next();
+            if (!memoryByPid.containsKey(entry.getKey())) {
+                entry.getValue().reader.close();
+                iterator.remove();
+            }
+        }
+
+        processes.sort(Comparator.comparingLong(GpuProcessSample.GpuProcess::getTotalMemoryMiB).reversed()
+            .thenComparingInt(GpuProcessSample.GpuProcess::getPid));
+        return new GpuProcessSample(now, true, processes);
+    }
+
+    /**
+     * Returns the GPU memory held by each process, by GPU UUID, or {@code null} when
+     * nvidia-smi could not be run.
+     */
+    private Map<Integer, Map<String, Long>> queryComputeApps() {
+        GpuCollector gpus = gpuCollector;
+        if (gpus != null && gpus.listsComputeApps()) {
+            return gpus.collectComputeApps();
+        }
+        try {
+            ProcessBuilder pb = new ProcessBuilder(nvidiaSmiCommand,
+                "--query-compute-apps=pid,gpu_uuid,used_memory", "--format=csv,noheader,nounits");
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            Process process = Instrumentation.start(pb);
+            Map<Integer, Map<String, Long>> result = new LinkedHashMap<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    if (fields.length < 3) continue;
+                    int pid;
+                    long memory;
+                    try {
+                        pid = Integer.parseInt(fields[0].trim());
+                        memory = Long.parseLong(fields[2].trim());
+                    } catch (NumberFormatException e) {
+                        // "[N/A]" memory, e.g. under MIG or without the permission to see it
+                        continue;
+                    }
+                    result.computeIfAbsent(pid, p -> new HashMap<>()).merge(fields[1].trim(), memory, Long::sum);
+                }
+            }
+            return process.waitFor() == 0 ? result : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** What is known about one pid between polls. */
+    private final class TrackedProcess {
+        final ProcPidReader reader;
+        long startTicks = -1;
+        String user = "";
+        String command = "";
+        long cpuTicks;
+        long sampledAt;
+
+        TrackedProcess(ProcPidReader reader) {
+            this.reader = reader;
+        }
+
+        void identify(int pid, long startTicks) {
+            Path dir = procRoot.resolve(Integer.toString(pid));
+            this.startTicks = startTicks;
+            this.cpuTicks = 0;
+            this.sampledAt = 0;
+            try {
+                // /proc/<pid> belongs to the process's effective user
+                user = Files.getOwner(dir).getName();
+            } catch (IOException | UnsupportedOperationException e) {
+                user = "";
+            }
+            command = readCommand(dir);
+        }
+    }
+
+    /** The command line with arguments separated by spaces, or the command name for kernel threads. */
+    private static String readCommand(Path dir) {
+        try {
+            byte[] cmdline = Files.readAllBytes(dir.resolve("cmdline"));
+            int end = cmdline.length;
+            while (end > 0 && cmdline[end - 1] == 0) end--;
+            if (end > 0) {
+                for (int i = 0; i < end; i++) {
+                    if (cmdline[i] == 0) cmdline[i] = ' ';
+                }
+                String command = new String(cmdline, 0, end, StandardCharsets.UTF_8);
+                return command.length() > MAX_COMMAND_LENGTH ? command.substring(0, MAX_COMMAND_LENGTH) : command;
+            }
+            return Files.readString(dir.resolve("comm")).trim();
+        } catch (IOException | RuntimeException e) {
+            return "";
+        }
+    }
+}
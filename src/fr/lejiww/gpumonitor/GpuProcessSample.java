@@ -0,0 +1,144 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The processes holding GPU memory as last seen by {@link GpuProcessCollector}, sorted by the
+ * memory they hold across all cards, largest first.
+ */
+public final class GpuProcessSample {
+    static final GpuProcessSample EMPTY = new GpuProcessSample(0, false, List.of());
+
+    private final long timestamp;
+    private final boolean available;
+    private final List<GpuProcess> processes;
+
+    public GpuProcessSample(long timestamp, boolean available, List<GpuProcess> processes) {
+        this.timestamp = timestamp;
+        this.available = available;
+        this.processes = List.copyOf(processes);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Whether nvidia-smi answered the last query. */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public List<GpuProcess> getProcesses() {
+        return processes;
+    }
+
+    /** Renders the sample, resolving GPU UUIDs to the indexes of {@code gpus}. */
+    public String toJson(List<GpuSample> gpus) {
+        StringBuilder sb = new StringBuilder(128 + processes.size() * 256);
+        sb.append("{\"timestamp\":").append(timestamp)
+          .append(",\"available\":").append(available)
+          .append(",\"processes\":[");
+        for (int i = 0; i < processes.size(); i++) {
+            GpuProcess process = processes.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"pid\":").append(process.pid)
+              .append(",\"user\":").append(Json.quote(process.user))
+              .append(",\"command\":").append(Json.quote(process.command))
+              .append(",\"state\":").append(Json.quote(String.valueOf(process.state)))
+              .append(",\"vramMiB\":").append(process.getTotalMemoryMiB())
+              .append(",\"rssKb\":").append(process.rssKb)
+              .append(",\"cpuSeconds\":").append(String.format(Locale.ROOT, "%.2f", process.cpuSeconds))
+              .append(",\"cpuPercent\":").append(String.format(Locale.ROOT, "%.1f", process.cpuPercent))
+              .append(",\"gpus\":[");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : process.gpuMemoryMiB.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('{');
+                GpuSample gpu = findGpu(gpus, entry.getKey());
+                if (gpu != null) {
+                    sb.append("\"index\":").append(gpu.getIndex()).append(',');
+                }
+                sb.append("\"uuid\":").append(Json.quote(entry.getKey()))
+                  .append(",\"memoryMiB\":").append(entry.getValue()).append('}');
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static GpuSample findGpu(List<GpuSample> gpus, String uuid) {
+        for (GpuSample gpu : gpus) {
+            if (gpu.getUuid().equalsIgnoreCase(uuid)) return gpu;
+        }
+        return null;
+    }
+
+    public static final class GpuProcess {
+        private final int pid;
+        private final String user;
+        private final String command;
+        private final char state;
+        private final long rssKb;
+        private final double cpuSeconds;
+        private final double cpuPercent;
+        private final Map<String, Long> gpuMemoryMiB;
+        private final long totalMemoryMiB;
+
+        /**
+         * @param user         owner of the process, empty when {@code /proc} has no entry for it
+         *                     (for instance a process in another PID namespace)
+         * @param cpuPercent   CPU use since the previous sample, 100 being one full core
+         * @param gpuMemoryMiB GPU memory held by the process, by GPU UUID
+         */
+        public GpuProcess(int pid, String user, String command, char state, long rssKb,
+                          double cpuSeconds, double cpuPercent, Map<String, Long> gpuMemoryMiB) {
+            this.pid = pid;
+            this.user = user;
+            this.command = command;
+            this.state = state;
+            this.rssKb = rssKb;
+            this.cpuSeconds = cpuSeconds;
+            this.cpuPercent = cpuPercent;
+            this.gpuMemoryMiB = Collections.unmodifiableMap(new TreeMap<>(gpuMemoryMiB));
+            long total = 0;
+            for (long memory : gpuMemoryMiB.values()) {
+                total += memory;
+            }
+            this.totalMemoryMiB = total;
+        }
+
+        public int getPid() {
+            return pid;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public long getRssKb() {
+            return rssKb;
+        }
+
+        public double getCpuPercent() {
+            return cpuPercent;
+        }
+
+        public Map<String, Long> getGpuMemoryMiB() {
+            return gpuMemoryMiB;
+        }
+
+        public long getTotalMemoryMiB() {
+            return totalMemoryMiB;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package fr.lejiww.gpumonitor;
+
+/**
+ * One reading of one GPU, as reported by a single nvidia-smi CSV line. Devices are
+ * identified by their index and UUID.
+ */
+public final class GpuSample {
+    public static final String QUERY_FIELDS =
+        "index,uuid,name,temperature.gpu,utilization.gpu,memory.used,memory.total,power.draw,power.limit";
+
+    private final int index;
+    private final String uuid;
+    private final String name;
+    private final double temperature;
+    private final double utilization;
+    private final double memoryUsed;
+    private final double memoryTotal;
+    private final double powerDraw;
+    private final double powerLimit;
+
+    public GpuSample(int index, String uuid, String name, double temperature, double utilization,
+                     double memoryUsed, double memoryTotal, double powerDraw, double powerLimit) {
+        this.index = index;
+        this.uuid = uuid;
+        this.name = name;
+        this.temperature = temperature;
+        this.utilization = utilization;
+        this.memoryUsed = memoryUsed;
+        this.memoryTotal = memoryTotal;
+        this.powerDraw = powerDraw;
+        this.powerLimit = powerLimit;
+    }
+
+    /**
+     * Parses a line produced with {@link #QUERY_FIELDS} and {@code --format=csv,noheader,nounits}.
+     * Returns {@code null} when the line does not have the expected number of fields.
+     */
+    public static GpuSample parse(String line) {
+        String[] fields = new String[9];
+        int count = 0;
+        int start = 0;
+        int length = line.length();
+        for (int i = 0; i <= length && count < fields.length; i++) {
+            if (i == length || line.charAt(i) == ',') {
+                fields[count++] = line.substring(start, i).trim();
+                start = i + 1;
+            }
+        }
+        if (count < fields.length) {
+            return null;
+        }
+        try {
+            return new GpuSample(
+                Integer.parseInt(fields[0]),
+                fields[1],
+                fields[2],
+                parseValue(fields[3]),
+                parseValue(fields[4]),
+                parseValue(fields[5]),
+                parseValue(fields[6]),
+                parseValue(fields[7]),
+                parseValue(fields[8])
+            );
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double parseValue(String field) {
+        if (field.isEmpty() || field.charAt(0) == '[') {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getUtilization() {
+        return utilization;
+    }
+
+    public double getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public double getMemoryTotal() {
+        return memoryTotal;
+    }
+
+    public double getPowerDraw() {
+        return powerDraw;
+    }
+
+    public double getPowerLimit() {
+        return powerLimit;
+    }
+
+    /**
+     * Formats the sample the way {@code /update} has always returned it:
+     * {@code name,temperature,utilization,memory.used,memory.total,power.draw,power.limit}.
+     */
+    public String toCsv() {
+        return name + "," + formatValue(temperature) + "," + formatValue(utilization) + ","
+            + formatValue(memoryUsed) + "," + formatValue(memoryTotal) + ","
+            + formatValue(powerDraw) + "," + formatValue(powerLimit);
+    }
+
+    public String toJson() {
+        return "{\"index\":" + index +
+               ",\"uuid\":" + Json.quote(uuid) +
+               ",\"name\":" + Json.quote(name) +
+               ",\"temperature\":" + formatValue(temperature) +
+               ",\"utilization\":" + formatValue(utilization) +
+               ",\"memoryUsed\":" + formatValue(memoryUsed) +
+               ",\"memoryTotal\":" + formatValue(memoryTotal) +
+               ",\"powerDraw\":" + formatValue(powerDraw) +
+               ",\"powerLimit\":" + formatValue(powerLimit) +
+               "}";
+    }
+
+    static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,133 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Locale;
+
+/**
+ * Min/max/average buckets for one series over a time range. Buckets are held in parallel
+ * primitive arrays indexed by {@code (timestamp - from) / step}; empty buckets have a count of 0.
+ */
+public final class HistoryRange {
+    private final Metric metric;
+    private final int gpu;
+    private final long from;
+    private final long to;
+    private final long step;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final int[] count;
+
+    HistoryRange(Metric metric, int gpu, long from, long to, long step, int maxBuckets) {
+        long span = Math.max(1, to - from);
+        long effectiveStep = Math.max(1, step);
+        if ((span + effectiveStep - 1) / effectiveStep > maxBuckets) {
+            effectiveStep = (span + maxBuckets - 1) / maxBuckets;
+        }
+        int buckets = (int) ((span + effectiveStep - 1) / effectiveStep);
+
+        this.metric = metric;
+        this.gpu = gpu;
+        this.from = from;
+        this.to = to;
+        this.step = effectiveStep;
+        this.min = new double[buckets];
+        this.max = new double[buckets];
+        this.sum = new double[buckets];
+        this.count = new int[buckets];
+    }
+
+    void add(long timestamp, double value) {
+        if (timestamp < from || timestamp >= to) return;
+        int bucket = (int) ((timestamp - from) / step);
+        if (count[bucket] == 0) {
+            min[bucket] = value;
+            max[bucket] = value;
+        } else {
+            if (value < min[bucket]) min[bucket] = value;
+            if (value > max[bucket]) max[bucket] = value;
+        }
+        sum[bucket] += value;
+        count[bucket]++;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public int getGpu() {
+        return gpu;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public int getBucketCount() {
+        return count.length;
+    }
+
+    public long getBucketStart(int bucket) {
+        return from + bucket * step;
+    }
+
+    public int getCount(int bucket) {
+        return count[bucket];
+    }
+
+    public double getMin(int bucket) {
+        return min[bucket];
+    }
+
+    public double getMax(int bucket) {
+        return max[bucket];
+    }
+
+    public double getAverage(int bucket) {
+        return count[bucket] == 0 ? 0 : sum[bucket] / count[bucket];
+    }
+
+    public boolean isEmpty() {
+        for (int c : count) {
+            if (c > 0) return false;
+        }
+        return true;
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(64 + count.length * 64);
+        sb.append("{\"metric\":").append(Json.quote(metric.getKey()));
+        if (metric.isPerGpu()) {
+            sb.append(",\"gpu\":").append(gpu);
+        }
+        sb.append(",\"from\":").append(from)
+          .append(",\"to\":").append(to)
+          .append(",\"step\":").append(step)
+          .append(",\"buckets\":[");
+        boolean first = true;
+        for (int bucket = 0; bucket < count.length; bucket++) {
+            if (count[bucket] == 0) continue;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append("{\"t\":").append(getBucketStart(bucket))
+              .append(",\"min\":").append(format(min[bucket]))
+              .append(",\"max\":").append(format(max[bucket]))
+              .append(",\"avg\":").append(format(getAverage(bucket)))
+              .append(",\"count\":").append(count[bucket])
+              .append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -0,0 +1,217 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A parsed HTTP/1.x request head. {@link #read(InputStream)} consumes exactly one request
+ * (including any {@code Content-Length} body) so that pipelined requests stay in the stream.
+ */
+public final class HttpRequest {
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_HEADERS = 100;
+    private static final int NO_BYTE = -2;
+
+    private final String method;
+    private final String target;
+    private final String path;
+    private final String query;
+    private final String version;
+    private final Map<String, String> headers;
+    private Map<String, String> parameters;
+
+    private HttpRequest(String method, String target, String version, Map<String, String> headers) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        int queryStart = target.indexOf('?');
+        this.path = queryStart >= 0 ? target.substring(0, queryStart) : target;
+        this.query = queryStart >= 0 ? target.substring(queryStart + 1) : "";
+    }
+
+    /**
+     * Reads the next request, or returns {@code null} if the peer closed the connection
+     * before sending one. The whole head must arrive within {@code headerTimeoutMillis} of its
+     * first byte. The deadline is checked whenever a read would wait for more data, so it
+     * is enforced within one socket read timeout.
+     *
+     * @throws RequestTimeoutException if the head takes longer than that
+     */
+    public static HttpRequest read(InputStream in, long headerTimeoutMillis) throws IOException {
+        int first = in.read();
+        if (first < 0) return null;
+        long deadline = System.nanoTime() + headerTimeoutMillis * 1_000_000L;
+        String requestLine = readLine(in, first, deadline);
+        // Tolerate stray blank lines between pipelined requests (RFC 7230, 3.5)
+        while (requestLine != null && requestLine.isEmpty()) {
+            requestLine = readLine(in, NO_BYTE, deadline);
+        }
+        if (requestLine == null) return null;
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            throw new BadRequestException("Malformed request line: " + requestLine);
+        }
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String line;
+        while (true) {
+            line = readLine(in, NO_BYTE, deadline);
+            if (line == null) throw new BadRequestException("Connection closed inside headers");
+            if (line.isEmpty()) break;
+            if (headers.size() >= MAX_HEADERS) throw new BadRequestException("Too many headers");
+            int colon = line.indexOf(':');
+            if (colon <= 0) throw new BadRequestException("Malformed header: " + line);
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            headers.merge(name, value, (a, b) -> a + ", " + b);
+        }
+
+        HttpRequest request = new HttpRequest(parts[0], parts[1], parts[2], headers);
+        request.skipBody(in);
+        return request;
+    }
+
+    private void skipBody(InputStream in) throws IOException {
+        if (headers.containsKey("Transfer-Encoding")) {
+            throw new BadRequestException("Chunked request bodies are not supported");
+        }
+        String contentLength = headers.get("Content-Length");
+        if (contentLength == null) return;
+        long remaining;
+        try {
+            remaining = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid Content-Length: " + contentLength);
+        }
+        if (remaining < 0) {
+            throw new BadRequestException("Invalid Content-Length: " + contentLength);
+        }
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new BadRequestException("Connection closed inside body");
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /** Reads one line, starting with {@code first} unless it is {@link #NO_BYTE}. */
+    private static String readLine(InputStream in, int first, long deadline) throws IOException {
+        byte[] line = new byte[128];
+        int length = 0;
+        int b = first;
+        while (true) {
+            if (b == NO_BYTE) {
+                if (in.available() == 0 && System.nanoTime() - deadline > 0) {
+                    throw new RequestTimeoutException("Request head not received in time");
+                }
+                b = in.read();
+            }
+            if (b < 0) break;
+            if (b == '\n') {
+                if (length > 0 && line[length - 1] == '\r') length--;
+                return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            if (length == MAX_LINE_LENGTH) throw new BadRequestException("Line too long");
+            if (length == line.length) {
+                byte[] larger = new byte[Math.min(line.length * 2, MAX_LINE_LENGTH)];
+                System.arraycopy(line, 0, larger, 0, length);
+                line = larger;
+            }
+            line[length++] = (byte) b;
+            b = NO_BYTE;
+        }
+        if (length > 0) throw new BadRequestException("Connection closed inside a line");
+        return null;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns a decoded query string parameter, or {@code null} if it is absent.
+     */
+    public String getParameter(String name) {
+        if (parameters == null) {
+            parameters = new HashMap<>();
+            if (!query.isEmpty()) {
+                for (String pair : query.split("&")) {
+                    int equals = pair.indexOf('=');
+                    String key = equals >= 0 ? pair.substring(0, equals) : pair;
+                    String value = equals >= 0 ? pair.substring(equals + 1) : "";
+                    try {
+                        parameters.putIfAbsent(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                                               URLDecoder.decode(value, StandardCharsets.UTF_8));
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+            }
+        }
+        return parameters.get(name);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * HTTP/1.1 connections persist unless the client sends {@code Connection: close};
+     * HTTP/1.0 connections persist only with {@code Connection: keep-alive}.
+     */
+    public boolean isKeepAlive() {
+        String connection = headers.get("Connection");
+        String value = connection == null ? "" : connection.toLowerCase(Locale.ROOT);
+        if ("HTTP/1.0".equals(version)) {
+            return value.contains("keep-alive");
+        }
+        return !value.contains("close");
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + target + " " + version;
+    }
+
+    public static class BadRequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /** The request head did not arrive within the header timeout. */
+    public static class RequestTimeoutException extends BadRequestException {
+        private static final long serialVersionUID = 1L;
+
+        public RequestTimeoutException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide self-monitoring: named {@link LatencyHistogram}s for requests and collectors,
+ * counts of forked processes per command, and gauges registered by the components that own
+ * them. Everything is rendered on {@code /debug}.
+ */
+public final class Instrumentation {
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> FORKS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final LongAdder FORK_FAILURES = new LongAdder();
+    private static final long STARTED = System.currentTimeMillis();
+
+    private Instrumentation() {
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        return histogram != null ? histogram : HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /** Starts {@code builder}'s process, counting it under the name of the executable. */
+    public static Process start(ProcessBuilder builder) throws IOException {
+        String command = Paths.get(builder.command().get(0)).getFileName().toString();
+        try {
+            Process process = builder.start();
+            FORKS.computeIfAbsent(command, c -> new LongAdder()).increment();
+            return process;
+        } catch (IOException e) {
+            FORK_FAILURES.increment();
+            throw e;
+        }
+    }
+
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\"uptimeMillis\":").append(System.currentTimeMillis() - STARTED);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sb.append(",\"threads\":{\"live\":").append(threads.getThreadCount())
+          .append(",\"daemon\":").append(threads.getDaemonThreadCount())
+          .append(",\"peak\":").append(threads.getPeakThreadCount())
+          .append(",\"started\":").append(threads.getTotalStartedThreadCount())
+          .append('}');
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        sb.append(",\"heap\":{\"usedBytes\":").append(heap.getUsed())
+          .append(",\"committedBytes\":").append(heap.getCommitted())
+          .append(",\"maxBytes\":").append(heap.getMax())
+          .append('}');
+
+        sb.append(",\"gauges\":{");
+        boolean first = true;
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Json.appendQuoted(sb, gauge.getKey());
+            sb.append(':').append(gauge.getValue().getAsLong());
+        }
+        sb.append('}');
+
+        long totalForks = 0;
+        sb.append(",\"forks\":{\"byCommand\":{");
+        first = true;
+        for (Map.Entry<String, LongAdder> fork : new TreeMap<>(FORKS).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            long count = fork.getValue().sum();
+            totalForks += count;
+            Json.appendQuoted(sb, fork.getKey());
+            sb.append(':').append(count);
+        }
+        sb.append("},\"total\":").append(totalForks)
+          .append(",\"failed\":").append(FORK_FAILURES.sum())
+          .append('}');
+
+        sb.append(",\"latency\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            if (!first) sb.append(',');
+            first = false;
+            Json.appendQuoted(sb, entry.getKey());
+            long count = h.getCount();
+            sb.append(":{\"count\":").append(count)
+              .append(",\"errors\":").append(h.getErrors())
+              .append(",\"errorRate\":").append(format(count == 0 ? 0 : (double) h.getErrors() / count))
+              .append(",\"meanMs\":").append(millis(h.getMeanNanos()))
+              .append(",\"p50Ms\":").append(millis(h.getPercentileNanos(0.50)))
+              .append(",\"p90Ms\":").append(millis(h.getPercentileNanos(0.90)))
+              .append(",\"p99Ms\":").append(millis(h.getPercentileNanos(0.99)))
+              .append(",\"p999Ms\":").append(millis(h.getPercentileNanos(0.999)))
+              .append(",\"maxMs\":").append(millis(h.getMaxNanos()))
+              .append('}');
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /** Plain-text rendering of {@link #toJson()} for the {@code /debug} page. */
+    public static String toText() {
+        StringBuilder sb = new StringBuilder(4096);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sb.append("Uptime: ").append((System.currentTimeMillis() - STARTED) / 1000).append(" s\n");
+        sb.append("Threads: ").append(threads.getThreadCount()).append(" live, ")
+          .append(threads.getDaemonThreadCount()).append(" daemon, ")
+          .append(threads.getPeakThreadCount()).append(" peak, ")
+          .append(threads.getTotalStartedThreadCount()).append(" started\n");
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        sb.append("Heap: ").append(heap.getUsed() >> 20).append(" MB used, ")
+          .append(heap.getCommitted() >> 20).append(" MB committed, ")
+          .append(heap.getMax() >> 20).append(" MB max\n");
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet()) {
+            sb.append(gauge.getKey()).append(": ").append(gauge.getValue().getAsLong()).append('\n');
+        }
+
+        sb.append("\nForked processes (").append(FORK_FAILURES.sum()).append(" failed to start)\n");
+        for (Map.Entry<String, LongAdder> fork : new TreeMap<>(FORKS).entrySet()) {
+            sb.append(String.format(Locale.ROOT, "  %-20s %10d%n", fork.getKey(), fork.getValue().sum()));
+        }
+
+        sb.append(String.format(Locale.ROOT, "%n%-28s %9s %7s %9s %9s %9s %9s %9s%n",
+            "Latency (ms)", "count", "errors", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%-28s %9d %7d %9s %9s %9s %9s %9s%n",
+                entry.getKey(), h.getCount(), h.getErrors(), millis(h.getMeanNanos()),
+                millis(h.getPercentileNanos(0.50)), millis(h.getPercentileNanos(0.90)),
+                millis(h.getPercentileNanos(0.99)), millis(h.getMaxNanos())));
+        }
+        return sb.toString();
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
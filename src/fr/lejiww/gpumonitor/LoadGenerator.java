@@ -0,0 +1,345 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load and soak test for a running monitor. Simulates dashboards polling the way the page
+ * has always done ({@code /update} and {@code /system} every 2 s, {@code /ollama/status}
+ * every 5 s) and Prometheus scrapers reading {@code /metrics}, each on its own kept-alive
+ * connections. Every report interval it prints throughput, latency percentiles and errors,
+ * together with the server's thread count, forked processes and heap taken from
+ * {@code /debug?format=json}.
+ *
+ * <p>Latency is measured from the time a request was due, not from when it was sent, so a
+ * server that falls behind shows up as latency rather than as fewer requests.
+ *
+ * <pre>
+ * java -cp gpu-monitor.jar -Dgpumonitor.load.browsers=500 fr.lejiww.gpumonitor.LoadGenerator
+ * </pre>
+ */
+public final class LoadGenerator {
+    private static final long DASHBOARD_PERIOD_MILLIS = 2000;
+    private static final long STATUS_PERIOD_MILLIS = 5000;
+
+    private final URI target;
+    private final InetSocketAddress address;
+    private final int browsers;
+    private final int scrapers;
+    private final long scrapeIntervalMillis;
+    private final long durationMillis;
+    private final long rampUpMillis;
+    private final long reportIntervalMillis;
+    private final int timeoutMillis;
+    private final ScheduledExecutorService workers;
+    private final Map<String, LatencyHistogram> totals = new ConcurrentHashMap<>();
+    private final AtomicReference<LatencyHistogram> period = new AtomicReference<>(new LatencyHistogram());
+    private final AtomicInteger connected = new AtomicInteger();
+
+    public LoadGenerator(URI target, int browsers, int scrapers, long scrapeIntervalMillis, long durationMillis,
+                         long rampUpMillis, long reportIntervalMillis, int timeoutMillis, int threads) {
+        this.target = target;
+        this.address = new InetSocketAddress(target.getHost(), target.getPort() < 0 ? 80 : target.getPort());
+        this.browsers = browsers;
+        this.scrapers = scrapers;
+        this.scrapeIntervalMillis = scrapeIntervalMillis;
+        this.durationMillis = durationMillis;
+        this.rampUpMillis = rampUpMillis;
+        this.reportIntervalMillis = reportIntervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        URI target = URI.create(System.getProperty("gpumonitor.load.url", "http://127.0.0.1:8080"));
+        int browsers = Integer.getInteger("gpumonitor.load.browsers", 50);
+        int scrapers = Integer.getInteger("gpumonitor.load.scrapers", 2);
+        long scrapeInterval = Long.getLong("gpumonitor.load.scrapeInterval", 15000);
+        long duration = Long.getLong("gpumonitor.load.duration", 300_000);
+        long rampUp = Long.getLong("gpumonitor.load.rampUp", 10000);
+        long reportInterval = Long.getLong("gpumonitor.load.reportInterval", 10000);
+        int timeout = Integer.getInteger("gpumonitor.load.timeout", 10000);
+        int threads = Integer.getInteger("gpumonitor.load.threads", 64);
+
+        new LoadGenerator(target, browsers, scrapers, scrapeInterval, duration, rampUp, reportInterval, timeout, threads)
+            .run();
+    }
+
+    public void run() throws InterruptedException {
+        ServerState baseline = ServerState.read(this);
+        if (baseline == null) {
+            System.err.println("No answer from " + target + "/debug, is the monitor running?");
+            return;
+        }
+        System.out.printf(Locale.ROOT, "Load test against %s: %d dashboards, %d scrapers every %d ms, for %d s%n",
+            target, browsers, scrapers, scrapeIntervalMillis, durationMillis / 1000);
+        System.out.printf(Locale.ROOT, "Server at start: %d threads, %d processes forked, %d MB heap used%n%n",
+            baseline.threads, baseline.forks, baseline.heapUsed >> 20);
+
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < browsers; i++) {
+            long start = rampUpMillis * i / Math.max(1, browsers);
+            Connection dashboard = new Connection("/update", "/system");
+            Connection status = new Connection("/ollama/status");
+            dashboard.schedule(start + ThreadLocalRandom.current().nextLong(DASHBOARD_PERIOD_MILLIS), DASHBOARD_PERIOD_MILLIS);
+            status.schedule(start + ThreadLocalRandom.current().nextLong(STATUS_PERIOD_MILLIS), STATUS_PERIOD_MILLIS);
+            connections.add(dashboard);
+            connections.add(status);
+        }
+        for (int i = 0; i < scrapers; i++) {
+            Connection scraper = new Connection("/metrics");
+            scraper.schedule(ThreadLocalRandom.current().nextLong(scrapeIntervalMillis), scrapeIntervalMillis);
+            connections.add(scraper);
+        }
+
+        System.out.printf(Locale.ROOT, "%7s %6s %8s %8s %8s %8s %8s %7s %8s %7s %8s%n",
+            "time(s)", "conns", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors",
+            "threads", "forks", "heap MB");
+        long started = System.currentTimeMillis();
+        long end = started + durationMillis;
+        int peakThreads = baseline.threads;
+        ServerState last = baseline;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(Math.min(reportIntervalMillis, Math.max(1, end - System.currentTimeMillis())));
+            LatencyHistogram interval = period.getAndSet(new LatencyHistogram());
+            long elapsed = System.currentTimeMillis() - started;
+            ServerState state = ServerState.read(this);
+            if (state != null) {
+                last = state;
+                peakThreads = Math.max(peakThreads, state.threads);
+            }
+            System.out.printf(Locale.ROOT, "%7d %6d %8.1f %8s %8s %8s %8s %7d %8s %7s %8s%n",
+                elapsed / 1000, connected.get(), interval.getCount() * 1000.0 / reportIntervalMillis,
+                millis(interval.getPercentileNanos(0.50)), millis(interval.getPercentileNanos(0.99)),
+                millis(interval.getPercentileNanos(0.999)), millis(interval.getMaxNanos()), interval.getErrors(),
+                state == null ? "-" : Integer.toString(state.threads),
+                state == null ? "-" : Long.toString(state.forks - baseline.forks),
+                state == null ? "-" : Long.toString(state.heapUsed >> 20));
+        }
+
+        workers.shutdownNow();
+        workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        printSummary(System.currentTimeMillis() - started, baseline, last, peakThreads);
+    }
+
+    private void printSummary(long elapsedMillis, ServerState baseline, ServerState last, int peakThreads) {
+        System.out.printf(Locale.ROOT, "%n%-16s %9s %8s %7s %8s %8s %8s %8s%n",
+            "Route", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(totals).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            System.out.printf(Locale.ROOT, "%-16s %9d %8.1f %7d %8s %8s %8s %8s%n",
+                entry.getKey(), h.getCount(), h.getCount() * 1000.0 / elapsedMillis, h.getErrors(),
+                millis(h.getPercentileNanos(0.50)), millis(h.getPercentileNanos(0.99)),
+                millis(h.getPercentileNanos(0.999)), millis(h.getMaxNanos()));
+        }
+        long forks = last.forks - baseline.forks;
+        System.out.printf(Locale.ROOT, "%nServer threads: %d at start, %d at end, %d peak%n",
+            baseline.threads, last.threads, peakThreads);
+        System.out.printf(Locale.ROOT, "Processes forked: %d (%.2f/s)", forks, forks * 1000.0 / elapsedMillis);
+        String byCommand = last.forksByCommand(baseline);
+        System.out.println(byCommand.isEmpty() ? "" : ", " + byCommand);
+        System.out.printf(Locale.ROOT, "Heap used: %d MB at start, %d MB at end (%d MB committed)%n",
+            baseline.heapUsed >> 20, last.heapUsed >> 20, last.heapCommitted >> 20);
+    }
+
+    private void record(String path, long nanos, boolean error) {
+        LatencyHistogram total = totals.get(path);
+        if (total == null) {
+            total = totals.computeIfAbsent(path, p -> new LatencyHistogram());
+        }
+        total.record(nanos, error);
+        period.get().record(nanos, error);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    /**
+     * One kept-alive connection of a simulated client, sending its requests one after the
+     * other on every period. A failed request closes it and the next period reconnects.
+     */
+    private final class Connection implements Runnable {
+        private final byte[][] requests;
+        private final String[] paths;
+        private final byte[] body = new byte[64 * 1024];
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private long periodNanos;
+        private long dueNanos;
+
+        Connection(String... paths) {
+            this.paths = paths;
+            this.requests = new byte[paths.length][];
+            for (int i = 0; i < paths.length; i++) {
+                requests[i] = ("GET " + paths[i] + " HTTP/1.1\r\nHost: " + target.getAuthority() +
+                    "\r\nUser-Agent: gpu-monitor-load\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+
+        void schedule(long initialDelayMillis, long periodMillis) {
+            periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelayMillis);
+            workers.scheduleAtFixedRate(this, initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            long due = dueNanos;
+            dueNanos += periodNanos;
+            for (int i = 0; i < requests.length; i++) {
+                boolean ok = false;
+                try {
+                    ok = send(requests[i]);
+                } catch (IOException | RuntimeException e) {
+                    // A malformed response must not escape run(): the executor would cancel this client silently
+                    close();
+                }
+                record(paths[i], System.nanoTime() - due, !ok);
+            }
+        }
+
+        /** Returns whether the server answered with a 2xx status. */
+        private boolean send(byte[] request) throws IOException {
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(address, timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                socket.setTcpNoDelay(true);
+                in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+                connected.incrementAndGet();
+            }
+            out.write(request);
+            out.flush();
+            int status = readResponse();
+            return status >= 200 && status < 300;
+        }
+
+        /** Reads one response, discarding the body, and returns its status code. */
+        private int readResponse() throws IOException {
+            int status = -1;
+            long contentLength = 0;
+            boolean close = false;
+            StringBuilder line = new StringBuilder(64);
+            while (true) {
+                int b = in.read();
+                if (b < 0) throw new IOException("Connection closed");
+                if (b == '\r') continue;
+                if (b != '\n') {
+                    line.append((char) b);
+                    continue;
+                }
+                if (line.length() == 0) break;
+                String header = line.toString();
+                if (status < 0) {
+                    int space = header.indexOf(' ');
+                    status = Integer.parseInt(header.substring(space + 1, space + 4));
+                } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Long.parseLong(header.substring(15).trim());
+                } else if (header.regionMatches(true, 0, "Connection:", 0, 11)) {
+                    close = header.toLowerCase(Locale.ROOT).contains("close");
+                }
+                line.setLength(0);
+            }
+            while (contentLength > 0) {
+                int n = in.read(body, 0, (int) Math.min(body.length, contentLength));
+                if (n < 0) throw new IOException("Connection closed");
+                contentLength -= n;
+            }
+            if (close) {
+                close();
+            }
+            return status;
+        }
+
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+                socket = null;
+                connected.decrementAndGet();
+            }
+        }
+    }
+
+    /** The server's own view of itself, from {@code /debug?format=json}. */
+    private static final class ServerState {
+        final int threads;
+        final long forks;
+        final Map<?, ?> forksByCommand;
+        final long heapUsed;
+        final long heapCommitted;
+
+        private ServerState(Object debug) {
+            this.threads = (int) Json.longField(Json.field(debug, "threads"), "live");
+            Object forked = Json.field(debug, "forks");
+            this.forks = Json.longField(forked, "total");
+            Object byCommand = Json.field(forked, "byCommand");
+            this.forksByCommand = byCommand instanceof Map ? (Map<?, ?>) byCommand : Map.of();
+            Object heap = Json.field(debug, "heap");
+            this.heapUsed = Json.longField(heap, "usedBytes");
+            this.heapCommitted = Json.longField(heap, "committedBytes");
+        }
+
+        /** Returns {@code null} when the server does not answer. */
+        static ServerState read(LoadGenerator generator) {
+            try (Socket socket = new Socket()) {
+                socket.connect(generator.address, generator.timeoutMillis);
+                socket.setSoTimeout(generator.timeoutMillis);
+                OutputStream out = socket.getOutputStream();
+                out.write(("GET /debug?format=json HTTP/1.1\r\nHost: " + generator.target.getAuthority() +
+                    "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                int body = response.indexOf("\r\n\r\n");
+                if (!response.startsWith("HTTP/1.1 200") || body < 0) return null;
+                return new ServerState(Json.parse(response.substring(body + 4)));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /** Processes forked since {@code baseline}, by command, e.g. {@code "nvidia-smi 150"}. */
+        String forksByCommand(ServerState baseline) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<?, ?> entry : new TreeMap<>(forksByCommand).entrySet()) {
+                long count = Json.longField(forksByCommand, (String) entry.getKey())
+                    - Json.longField(baseline.forksByCommand, (String) entry.getKey());
+                if (count == 0) continue;
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(entry.getKey()).append(' ').append(count);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -2,26 +2,187 @@ package fr.lejiww.gpumonitor;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.net.URI;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main {
 
     public static void main(String[] args) {
-        int port = 8080;
+        int port = Integer.getInteger("gpumonitor.port", 8080);
+        long sampleInterval = Long.getLong("gpumonitor.interval", 2000L);
+        String nvidiaSmi = System.getProperty("gpumonitor.nvidiaSmi", "nvidia-smi");
+        String gpuMode = System.getProperty("gpumonitor.gpu.mode", "stream");
+        Path procRoot = Paths.get(System.getProperty("gpumonitor.procRoot", "/proc"));
+        String cgroupDir = System.getProperty("gpumonitor.cgroup.dir");
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Server started on port " + port);
+        int maxStreams = Integer.getInteger("gpumonitor.stream.maxSubscribers", 1000);
+        long streamWriteTimeout = Long.getLong("gpumonitor.stream.writeTimeout", 10000);
+        int historyCapacity = Integer.getInteger("gpumonitor.history.capacity", 86400);
+        String storeDir = System.getProperty("gpumonitor.store.dir");
+        long segmentMillis = Long.getLong("gpumonitor.store.segmentMillis", 3600_000L);
+        long retentionMillis = Long.getLong("gpumonitor.store.retentionMillis", 7 * 24 * 3600_000L);
+        int segmentRecords = Integer.getInteger("gpumonitor.store.segmentRecords", 262144);
 
+        String serverMode = System.getProperty("gpumonitor.server.mode", "pool");
+        int maxConnections = Integer.getInteger("gpumonitor.server.maxConnections", 256);
+        int backlog = Integer.getInteger("gpumonitor.server.backlog", 128);
+        int readTimeout = Integer.getInteger("gpumonitor.server.readTimeout", 10000);
+        String ollamaCommand = System.getProperty("gpumonitor.ollama.command", "sudo service ollama");
+        long ollamaTimeout = Long.getLong("gpumonitor.ollama.timeout", 60000);
+        String ollamaUrl = System.getProperty("gpumonitor.ollama.url", "http://127.0.0.1:11434");
+        long ollamaInterval = Long.getLong("gpumonitor.ollama.interval", 5000);
+        long processInterval = Long.getLong("gpumonitor.processes.interval", 5000);
+        String alertRules = System.getProperty("gpumonitor.alerts.rules", "");
+        String alertFile = System.getProperty("gpumonitor.alerts.file");
+        String webhookUrl = System.getProperty("gpumonitor.alerts.webhook");
+        int webhookQueue = Integer.getInteger("gpumonitor.alerts.queueCapacity", 256);
+        long webhookTimeout = Long.getLong("gpumonitor.alerts.webhookTimeout", 5000);
+        String fleetPeers = System.getProperty("gpumonitor.fleet.peers");
+        long fleetInterval = Long.getLong("gpumonitor.fleet.interval", sampleInterval);
+        long fleetTimeout = Long.getLong("gpumonitor.fleet.timeout", 1500);
+        int fleetFailures = Integer.getInteger("gpumonitor.fleet.failureThreshold", 3);
+        long fleetCooldown = Long.getLong("gpumonitor.fleet.cooldown", 30000);
+        long fleetStale = Long.getLong("gpumonitor.fleet.staleAfter", 3 * fleetInterval);
+
+        GpuProcessCollector processes = new GpuProcessCollector(nvidiaSmi, procRoot, processInterval);
+        OllamaCollector ollamaCollector = new OllamaCollector(URI.create(ollamaUrl), ollamaInterval, processes);
+        Path cgroup = cgroupDir == null ? CgroupReader.detect(procRoot, Paths.get("/sys/fs/cgroup"))
+            : "none".equals(cgroupDir) ? null : Paths.get(cgroupDir);
+        if (cgroup != null) {
+            System.out.println("Reporting container metrics from cgroup " + cgroup);
+        }
+        MetricsSampler sampler = new MetricsSampler(sampleInterval, nvidiaSmi, gpuMode, procRoot, cgroup, ollamaCollector);
+        SnapshotBroadcaster broadcaster = new SnapshotBroadcaster(maxStreams, streamWriteTimeout);
+        MetricHistory history = new MetricHistory(historyCapacity);
+        sampler.addListener(history::record);
+        sampler.addListener(broadcaster::publish);
+        sampler.setSubscriberCount(broadcaster::getSubscriberCount);
+
+        MetricStore store = null;
+        if (storeDir != null) {
+            try {
+                store = new MetricStore(Paths.get(storeDir), segmentMillis, retentionMillis, segmentRecords);
+                sampler.addListener(store::record);
+                MetricStore openedStore = store;
+                Runtime.getRuntime().addShutdownHook(new Thread(openedStore::close));
+            } catch (IOException e) {
+                System.err.println("Error opening metric store, history will not be persisted: " + e.getMessage());
+            }
+        }
+        processes.setGpuCollector(sampler.getGpuCollector());
+        processes.start();
+        OllamaController ollama = new OllamaController(CommandRunner.processRunner(ollamaTimeout), ollamaCommand);
+
+        if (alertFile != null) {
+            try {
+                alertRules += "\n" + Files.readString(Paths.get(alertFile));
+            } catch (IOException e) {
+                System.err.println("Error reading alert rules from " + alertFile + ": " + e.getMessage());
+            }
+        }
+        WebhookNotifier webhook = webhookUrl == null ? null
+            : new WebhookNotifier(URI.create(webhookUrl), webhookQueue, webhookTimeout);
+        AlertEngine alerts = new AlertEngine(AlertEngine.parseRules(alertRules), webhook);
+        sampler.addListener(alerts::evaluate);
+        alerts.start();
+
+        FleetAggregator fleet = null;
+        if (fleetPeers != null && !fleetPeers.isBlank()) {
+            List<URI> peers = new ArrayList<>();
+            for (String peer : fleetPeers.split(",")) {
+                if (!peer.isBlank()) peers.add(URI.create(peer.trim()));
+            }
+            fleet = new FleetAggregator(peers, fleetInterval, fleetTimeout, fleetFailures, fleetCooldown, fleetStale);
+            fleet.start();
+        }
+
+        MonitorServices services = new MonitorServices(sampler, broadcaster, history, store, ollama, alerts, fleet, processes);
+        sampler.start();
+        // Render and compress the dashboard once, before the first request
+        DashboardPage.get();
+
+        Executor executor = createExecutor(serverMode, maxConnections);
+        // Stop accepting once every permit is taken: further clients wait in the listen backlog
+        Semaphore connectionPermits = new Semaphore(maxConnections);
+        Instrumentation.gauge("connections.active", () -> maxConnections - connectionPermits.availablePermits());
+        Instrumentation.gauge("stream.subscribers", broadcaster::getSubscriberCount);
+
+        try (ServerSocket serverSocket = new ServerSocket(port, backlog)) {
+            System.out.println("Server started on port " + port + " (mode " + serverMode
+                + ", max " + maxConnections + " connections)");
+
+            LatencyHistogram permitWait = Instrumentation.histogram("accept permit wait");
+            LatencyHistogram handoff = Instrumentation.histogram("accept handoff");
+            LatencyHistogram queueWait = Instrumentation.histogram("handler queue wait");
             while (true) {
-                Socket clientSocket = serverSocket.accept();
+                long waitStarted = System.nanoTime();
+                connectionPermits.acquireUninterruptibly();
+                permitWait.recordSince(waitStarted, false);
+                Socket clientSocket;
+                try {
+                    clientSocket = serverSocket.accept();
+                    clientSocket.setSoTimeout(readTimeout);
+                } catch (IOException e) {
+                    connectionPermits.release();
+                    throw e;
+                }
+                long accepted = System.nanoTime();
                 System.out.println("New connection from " + clientSocket.getInetAddress());
 
-                Thread clientThread = new Thread(new ClientHandler(clientSocket));
-                clientThread.start();
+                ClientHandler handler = new ClientHandler(clientSocket, services);
+                try {
+                    executor.execute(() -> {
+                        queueWait.recordSince(accepted, false);
+                        try {
+                            handler.run();
+                        } finally {
+                            connectionPermits.release();
+                        }
+                    });
+                    handoff.recordSince(accepted, false);
+                } catch (RejectedExecutionException e) {
+                    handoff.recordSince(accepted, true);
+                    connectionPermits.release();
+                    clientSocket.close();
+                }
             }
         } catch (IOException e) {
             System.err.println("Error starting server : " + e.getMessage());
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * "thread" starts a platform thread per connection, "pool" reuses a fixed set of
+     * platform threads and "virtual" runs each connection on a virtual thread (Java 21+).
+     */
+    private static Executor createExecutor(String mode, int maxConnections) {
+        if ("thread".equals(mode)) {
+            return command -> new Thread(command).start();
+        }
+        if ("virtual".equals(mode)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads need Java 21 or later, falling back to pool mode");
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxConnections, r -> {
+            Thread thread = new Thread(r, "client-handler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package fr.lejiww.gpumonitor;
+
+/**
+ * The numeric series kept over time. GPU metrics are recorded per device index,
+ * system metrics once per host.
+ */
+public enum Metric {
+    GPU_TEMPERATURE("gpu.temperature", true),
+    GPU_UTILIZATION("gpu.utilization", true),
+    GPU_MEMORY_USED("gpu.memoryUsed", true),
+    GPU_MEMORY_PERCENTAGE("gpu.memoryPercentage", true),
+    GPU_POWER_DRAW("gpu.powerDraw", true),
+    CPU_USAGE("cpu.usage", false),
+    CPU_TEMPERATURE("cpu.temperature", false),
+    RAM_USED("ram.used", false),
+    RAM_PERCENTAGE("ram.percentage", false);
+
+    private static final Metric[] VALUES = values();
+
+    private final String key;
+    private final boolean perGpu;
+
+    Metric(String key, boolean perGpu) {
+        this.key = key;
+        this.perGpu = perGpu;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isPerGpu() {
+        return perGpu;
+    }
+
+    public static Metric fromKey(String key) {
+        for (Metric metric : VALUES) {
+            if (metric.key.equals(key)) return metric;
+        }
+        return null;
+    }
+
+    public static Metric fromId(int id) {
+        return id >= 0 && id < VALUES.length ? VALUES[id] : null;
+    }
+
+    public double valueOf(GpuSample gpu) {
+        switch (this) {
+            case GPU_TEMPERATURE: return gpu.getTemperature();
+            case GPU_UTILIZATION: return gpu.getUtilization();
+            case GPU_MEMORY_USED: return gpu.getMemoryUsed();
+            case GPU_MEMORY_PERCENTAGE:
+                return gpu.getMemoryTotal() > 0 ? gpu.getMemoryUsed() / gpu.getMemoryTotal() * 100 : 0;
+            case GPU_POWER_DRAW: return gpu.getPowerDraw();
+            default: throw new IllegalStateException(key + " is not a GPU metric");
+        }
+    }
+
+    public double valueOf(SystemSample system) {
+        switch (this) {
+            case CPU_USAGE: return system.getCpuUsage();
+            case CPU_TEMPERATURE: return system.getCpuTemp();
+            case RAM_USED: return system.getRamUsed();
+            case RAM_PERCENTAGE: return system.getRamPercentage();
+            default: throw new IllegalStateException(key + " is not a system metric");
+        }
+    }
+}
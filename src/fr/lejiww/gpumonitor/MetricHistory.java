@@ -0,0 +1,152 @@
+package fr.lejiww.gpumonitor;
+
+/**
+ * Fixed-capacity in-memory history of every {@link Metric}, one ring buffer per metric and
+ * GPU. Samples are stored in primitive arrays (timestamp and float value), so the heap
+ * footprint is {@code 12 bytes * capacity} per series and does not grow once a series is full.
+ */
+public class MetricHistory {
+    public static final int MAX_GPUS = 16;
+    private static final int SYSTEM_SLOT = 0;
+    private static final int MAX_BUCKETS = 10000;
+
+    private final int capacity;
+    private final Ring[][] rings;
+
+    public MetricHistory(int capacity) {
+        this.capacity = capacity;
+        this.rings = new Ring[Metric.values().length][MAX_GPUS];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds the readings of a snapshot, each at the time it was taken. A reading carried over
+     * from an earlier snapshot has the timestamp already stored and is skipped by its ring.
+     */
+    public void record(MetricsSnapshot snapshot) {
+        for (Metric metric : Metric.values()) {
+            if (metric.isPerGpu()) {
+                for (GpuSample gpu : snapshot.getGpus()) {
+                    if (gpu.getIndex() >= 0 && gpu.getIndex() < MAX_GPUS) {
+                        ring(metric, gpu.getIndex()).add(snapshot.getGpuTimestamp(), (float) metric.valueOf(gpu));
+                    }
+                }
+            } else {
+                ring(metric, SYSTEM_SLOT).add(snapshot.getSystemTimestamp(), (float) metric.valueOf(snapshot.getSystem()));
+            }
+        }
+    }
+
+    private Ring ring(Metric metric, int slot) {
+        Ring ring = rings[metric.ordinal()][slot];
+        if (ring == null) {
+            synchronized (rings) {
+                ring = rings[metric.ordinal()][slot];
+                if (ring == null) {
+                    ring = new Ring(capacity);
+                    rings[metric.ordinal()][slot] = ring;
+                }
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Returns the oldest timestamp held in any series, or {@code Long.MAX_VALUE} if all are empty.
+     */
+    public long getOldestTimestamp() {
+        long oldest = Long.MAX_VALUE;
+        for (Metric metric : Metric.values()) {
+            for (int slot = 0; slot < MAX_GPUS; slot++) {
+                oldest = Math.min(oldest, getOldestTimestamp(metric, slot));
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Returns the oldest timestamp held for a series, or {@code Long.MAX_VALUE} if it is empty.
+     */
+    public long getOldestTimestamp(Metric metric, int gpu) {
+        Ring ring = existingRing(metric, gpu);
+        return ring == null ? Long.MAX_VALUE : ring.oldest();
+    }
+
+    /**
+     * Aggregates the samples of one series in {@code [from, to)} into buckets of {@code step}
+     * milliseconds. The step is widened if the range would need more than 10000 buckets.
+     */
+    public HistoryRange query(Metric metric, int gpu, long from, long to, long step) {
+        HistoryRange range = new HistoryRange(metric, gpu, from, to, step, MAX_BUCKETS);
+        Ring ring = existingRing(metric, gpu);
+        if (ring != null) {
+            ring.aggregate(range);
+        }
+        return range;
+    }
+
+    private Ring existingRing(Metric metric, int gpu) {
+        int slot = metric.isPerGpu() ? gpu : SYSTEM_SLOT;
+        if (slot < 0 || slot >= MAX_GPUS) return null;
+        synchronized (rings) {
+            return rings[metric.ordinal()][slot];
+        }
+    }
+
+    private static final class Ring {
+        private final long[] timestamps;
+        private final float[] values;
+        private int head;
+        private int size;
+
+        Ring(int capacity) {
+            this.timestamps = new long[capacity];
+            this.values = new float[capacity];
+        }
+
+        synchronized void add(long timestamp, float value) {
+            // Keep timestamps ordered so that lookups can binary search
+            if (size > 0 && timestamp <= timestamps[physical(size - 1)]) return;
+            timestamps[head] = timestamp;
+            values[head] = value;
+            head = (head + 1) % timestamps.length;
+            if (size < timestamps.length) size++;
+        }
+
+        synchronized long oldest() {
+            return size == 0 ? Long.MAX_VALUE : timestamps[physical(0)];
+        }
+
+        synchronized void aggregate(HistoryRange range) {
+            int i = firstAtOrAfter(range.getFrom());
+            for (; i < size; i++) {
+                int p = physical(i);
+                if (timestamps[p] >= range.getTo()) break;
+                range.add(timestamps[p], values[p]);
+            }
+        }
+
+        /** Logical index (0 = oldest) of the first sample at or after {@code timestamp}. */
+        private int firstAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[physical(mid)] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int physical(int logical) {
+            int start = size < timestamps.length ? 0 : head;
+            return (start + logical) % timestamps.length;
+        }
+    }
+}
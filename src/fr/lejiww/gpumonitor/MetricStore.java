@@ -0,0 +1,288 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only on-disk history made of memory-mapped segment files.
+ *
+ * <p>Each segment is preallocated to a fixed number of 16-byte records (timestamp, metric id,
+ * GPU index, float value) behind a 64-byte header. The header holds the number of committed
+ * records and the last timestamp, and is updated after every record is written, so startup
+ * only reads headers and a torn write past the committed count is simply ignored. A new
+ * segment is started when the current one covers {@code segmentMillis} or is full, and
+ * segments that ended before the retention window are deleted.
+ */
+public class MetricStore {
+    private static final int MAGIC = 0x47504d53; // "GPMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 16;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_START = 8;
+    private static final int OFFSET_END = 16;
+    private static final int OFFSET_COUNT = 24;
+    private static final int OFFSET_CAPACITY = 28;
+
+    private final Path directory;
+    private final long segmentMillis;
+    private final long retentionMillis;
+    private final int segmentRecords;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    // Readings already written, so that those a snapshot carries over are not written again
+    private long lastGpuTimestamp = Long.MIN_VALUE;
+    private long lastSystemTimestamp = Long.MIN_VALUE;
+
+    public MetricStore(Path directory, long segmentMillis, long retentionMillis, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.segmentMillis = segmentMillis;
+        this.retentionMillis = retentionMillis;
+        this.segmentRecords = segmentRecords;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                Segment segment = Segment.open(file);
+                if (segment != null) {
+                    segments.add(segment);
+                } else {
+                    System.err.println("Ignoring unreadable metric segment " + file);
+                }
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.start, b.start));
+        deleteExpired(System.currentTimeMillis());
+        long records = 0;
+        for (Segment segment : segments) {
+            records += segment.count;
+        }
+        System.out.println("Metric store opened at " + directory + " (" + segments.size() + " segments, " + records + " records)");
+    }
+
+    public synchronized void record(MetricsSnapshot snapshot) {
+        boolean newGpus = snapshot.getGpuTimestamp() > lastGpuTimestamp;
+        boolean newSystem = snapshot.getSystemTimestamp() > lastSystemTimestamp;
+        try {
+            for (Metric metric : Metric.values()) {
+                if (metric.isPerGpu()) {
+                    if (!newGpus) continue;
+                    for (GpuSample gpu : snapshot.getGpus()) {
+                        append(snapshot.getGpuTimestamp(), metric, gpu.getIndex(), (float) metric.valueOf(gpu));
+                    }
+                } else if (newSystem) {
+                    append(snapshot.getSystemTimestamp(), metric, 0, (float) metric.valueOf(snapshot.getSystem()));
+                }
+            }
+            if (newGpus) lastGpuTimestamp = snapshot.getGpuTimestamp();
+            if (newSystem) lastSystemTimestamp = snapshot.getSystemTimestamp();
+        } catch (IOException e) {
+            System.err.println("Error writing metric store: " + e.getMessage());
+        }
+    }
+
+    private void append(long timestamp, Metric metric, int gpu, float value) throws IOException {
+        Segment segment = writableSegment(timestamp);
+        if (segment == null) return;
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = HEADER_SIZE + segment.count * RECORD_SIZE;
+        buffer.putLong(offset, timestamp);
+        buffer.putShort(offset + 8, (short) metric.ordinal());
+        buffer.putShort(offset + 10, (short) gpu);
+        buffer.putFloat(offset + 12, value);
+        segment.count++;
+        segment.end = timestamp;
+        buffer.putLong(OFFSET_END, timestamp);
+        buffer.putInt(OFFSET_COUNT, segment.count);
+    }
+
+    private Segment writableSegment(long timestamp) throws IOException {
+        if (active == null && !segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.count < last.capacity && timestamp - last.start < segmentMillis && timestamp >= last.end) {
+                last.mapForWrite();
+                active = last;
+            }
+        }
+        if (active != null && (active.count >= active.capacity || timestamp - active.start >= segmentMillis)) {
+            active.seal();
+            active = null;
+        }
+        if (active != null && timestamp < active.end) {
+            // Clock went backwards: keep records ordered within a segment
+            return null;
+        }
+        if (active == null) {
+            deleteExpired(timestamp);
+            Path file = directory.resolve("segment-" + timestamp + ".dat");
+            active = Segment.create(file, timestamp, segmentRecords);
+            segments.add(active);
+        }
+        return active;
+    }
+
+    private void deleteExpired(long now) {
+        while (!segments.isEmpty() && segments.get(0) != active && segments.get(0).end < now - retentionMillis) {
+            Segment expired = segments.remove(0);
+            try {
+                Files.deleteIfExists(expired.file);
+                System.out.println("Deleted expired metric segment " + expired.file.getFileName());
+            } catch (IOException e) {
+                System.err.println("Error deleting " + expired.file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized long getOldestTimestamp() {
+        return segments.isEmpty() ? Long.MAX_VALUE : segments.get(0).start;
+    }
+
+    /**
+     * Aggregates one series over {@code [from, to)}, reading only the segments that overlap
+     * the range, straight from their mappings.
+     */
+    public HistoryRange query(Metric metric, int gpu, long from, long to, long step) {
+        HistoryRange range = new HistoryRange(metric, gpu, from, to, step, 10000);
+        List<Segment> overlapping = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.start < to && segment.end >= from && segment.count > 0) {
+                    overlapping.add(segment);
+                    counts.add(segment.count);
+                }
+            }
+        }
+
+        short metricId = (short) metric.ordinal();
+        short gpuIndex = (short) (metric.isPerGpu() ? gpu : 0);
+        for (int i = 0; i < overlapping.size(); i++) {
+            ByteBuffer buffer;
+            try {
+                buffer = overlapping.get(i).readBuffer();
+            } catch (IOException e) {
+                System.err.println("Error reading metric segment: " + e.getMessage());
+                continue;
+            }
+            int count = counts.get(i);
+            for (int record = firstAtOrAfter(buffer, count, from); record < count; record++) {
+                int offset = HEADER_SIZE + record * RECORD_SIZE;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp >= to) break;
+                if (buffer.getShort(offset + 8) == metricId && buffer.getShort(offset + 10) == gpuIndex) {
+                    range.add(timestamp, buffer.getFloat(offset + 12));
+                }
+            }
+        }
+        return range;
+    }
+
+    private static int firstAtOrAfter(ByteBuffer buffer, int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_SIZE + mid * RECORD_SIZE) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public synchronized void close() {
+        if (active != null) {
+            active.seal();
+            active = null;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final long start;
+        private final int capacity;
+        private long end;
+        private int count;
+        private MappedByteBuffer buffer;
+
+        private Segment(Path file, long start, long end, int count, int capacity) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.capacity = capacity;
+        }
+
+        static Segment create(Path file, long start, int capacity) throws IOException {
+            Segment segment = new Segment(file, start, start, 0, capacity);
+            segment.mapForWrite();
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, VERSION);
+            buffer.putLong(OFFSET_START, start);
+            buffer.putLong(OFFSET_END, start);
+            buffer.putInt(OFFSET_CAPACITY, capacity);
+            buffer.putInt(OFFSET_COUNT, 0);
+            return segment;
+        }
+
+        /** Reads the header only; returns {@code null} if the file is not a valid segment. */
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                }
+                if (header.position() < HEADER_SIZE
+                        || header.getInt(OFFSET_MAGIC) != MAGIC
+                        || header.getInt(OFFSET_VERSION) != VERSION) {
+                    return null;
+                }
+                int capacity = header.getInt(OFFSET_CAPACITY);
+                int count = header.getInt(OFFSET_COUNT);
+                if (count < 0 || count > capacity || channel.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                    return null;
+                }
+                return new Segment(file, header.getLong(OFFSET_START), header.getLong(OFFSET_END), count, capacity);
+            }
+        }
+
+        synchronized void mapForWrite() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        synchronized ByteBuffer readBuffer() throws IOException {
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void seal() {
+            if (buffer != null) {
+                buffer.force();
+            }
+        }
+    }
+}
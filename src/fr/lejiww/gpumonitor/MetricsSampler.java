@@ -0,0 +1,568 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Collects GPU and system metrics on a single background thread and publishes them
+ * as an immutable {@link MetricsSnapshot}. Handlers read the latest snapshot instead
+ * of forking collectors themselves; when the snapshot is missing or stale, concurrent
+ * callers share one in-flight collection.
+ */
+public class MetricsSampler {
+    private final long intervalMillis;
+    private final long maxAgeMillis;
+    private final String nvidiaSmiCommand;
+    private final GpuCollector gpuCollector;
+    private final OllamaCollector ollama;
+    private final Path procRoot;
+    // Host facts that do not change while the monitor runs, read once
+    private final String hostname = readHostname();
+    private final String osInfo = readOsInfo();
+    private final int cpuCores = Runtime.getRuntime().availableProcessors();
+    private final ProcStatReader cpuStat;
+    private final ProcMeminfoReader memInfo;
+    private final CgroupReader cgroup;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<CompletableFuture<MetricsSnapshot>> inFlight = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Consumer<MetricsSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile MetricsSnapshot snapshot;
+
+    // Adaptive scheduling: each collector runs when its own interval is due
+    private final CollectorSchedule gpuSchedule;
+    private final CollectorSchedule systemSchedule;
+    private final long idleAfterMillis;
+    private final double utilizationDelta;
+    private final double powerDelta;
+    private final double temperatureDelta;
+    private volatile IntSupplier subscriberCount = () -> 0;
+    private volatile long lastActivity = System.currentTimeMillis();
+    // Guards nextTick only, so that rescheduling never waits for a collection in progress
+    private final Object tickLock = new Object();
+    private ScheduledFuture<?> nextTick;
+    // Last list returned by the GPU collector; a streaming collector returns the same one until a new reading
+    private List<GpuSample> lastGpuReading;
+
+    /**
+     * @param gpuMode "stream" for a long-lived nvidia-smi, "parallel" for one nvidia-smi per
+     *                device per sample, "nvml" to call the NVML library directly, anything
+     *                else for one nvidia-smi per sample
+     * @param cgroupDir the cgroup v2 group to report as the container, or {@code null}
+     */
+    public MetricsSampler(long intervalMillis, String nvidiaSmiCommand, String gpuMode, Path procRoot,
+                          Path cgroupDir, OllamaCollector ollama) {
+        this.intervalMillis = intervalMillis;
+        this.maxAgeMillis = intervalMillis * 2;
+        this.nvidiaSmiCommand = nvidiaSmiCommand;
+        this.gpuCollector = createGpuCollector(gpuMode);
+        this.ollama = ollama;
+        this.procRoot = procRoot;
+        this.cpuStat = new ProcStatReader(procRoot);
+        this.memInfo = new ProcMeminfoReader(procRoot);
+        this.cgroup = cgroupDir == null ? null : new CgroupReader(cgroupDir);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        boolean adaptive = Boolean.parseBoolean(System.getProperty("gpumonitor.sampling.adaptive", "true"));
+        long fastInterval = adaptive ? Long.getLong("gpumonitor.sampling.fastInterval", intervalMillis / 4) : intervalMillis;
+        long idleInterval = adaptive ? Long.getLong("gpumonitor.sampling.idleInterval", intervalMillis * 5) : intervalMillis;
+        // A streaming nvidia-smi only produces a reading once per loop, reading it faster gains nothing
+        long gpuMinDefault = "stream".equals(gpuMode) ? intervalMillis : 500;
+        this.gpuSchedule = new CollectorSchedule("gpu", intervalMillis,
+            Long.getLong("gpumonitor.sampling.gpuMinInterval", gpuMinDefault), fastInterval, idleInterval);
+        this.systemSchedule = new CollectorSchedule("system", intervalMillis,
+            Long.getLong("gpumonitor.sampling.systemMinInterval", 250), fastInterval, idleInterval);
+        this.idleAfterMillis = Long.getLong("gpumonitor.sampling.idleAfter", 60000);
+        this.utilizationDelta = doubleProperty("gpumonitor.sampling.utilizationDelta", 15);
+        this.powerDelta = doubleProperty("gpumonitor.sampling.powerDelta", 30);
+        this.temperatureDelta = doubleProperty("gpumonitor.sampling.temperatureDelta", 3);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private GpuCollector createGpuCollector(String gpuMode) {
+        if ("stream".equals(gpuMode)) {
+            return new NvidiaSmiStream(nvidiaSmiCommand, intervalMillis);
+        }
+        if ("parallel".equals(gpuMode)) {
+            return new ParallelNvidiaSmiSampler(nvidiaSmiCommand, Long.getLong("gpumonitor.gpu.deviceTimeout", intervalMillis));
+        }
+        if ("nvml".equals(gpuMode)) {
+            GpuCollector nvml = NvmlCollector.load(System.getProperty("gpumonitor.nvml.library", "libnvidia-ml.so.1"));
+            if (nvml != null) {
+                return nvml;
+            }
+            System.out.println("NVML unavailable, falling back to " + nvidiaSmiCommand);
+        }
+        return this::executeNvidiaSmiCommand;
+    }
+
+    public void start() {
+        gpuCollector.start();
+        ollama.start();
+        synchronized (tickLock) {
+            nextTick = scheduler.schedule(() -> tick(true), 0, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("Metrics sampler started (interval " + intervalMillis + " ms)");
+    }
+
+    public void stop() {
+        gpuCollector.stop();
+        ollama.stop();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Registers a callback invoked with every new snapshot, on the thread that collected it.
+     */
+    public void addListener(Consumer<MetricsSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Tells the sampler how many clients are subscribed to the stream; with none and no
+     * recent request, collection slows down to the idle interval.
+     */
+    public void setSubscriberCount(IntSupplier subscriberCount) {
+        this.subscriberCount = subscriberCount;
+    }
+
+    /**
+     * Records that a client is looking at the metrics. Coming out of idle, the collectors
+     * return to their normal interval at once and the next collection is rescheduled for it,
+     * instead of waiting for the idle interval to elapse.
+     */
+    public void markActivity() {
+        long now = System.currentTimeMillis();
+        boolean wasIdle = !isActive(lastActivity);
+        lastActivity = now;
+        if (wasIdle) {
+            gpuSchedule.wake();
+            systemSchedule.wake();
+            scheduleNextTick();
+        }
+    }
+
+    private boolean isActive(long lastActivity) {
+        return subscriberCount.getAsInt() > 0 || System.currentTimeMillis() - lastActivity < idleAfterMillis;
+    }
+
+    /** Current cadence of each collector, as reported by /health. */
+    public String getScheduleJson() {
+        return "{\"active\":" + isActive(lastActivity) +
+            ",\"gpu\":" + gpuSchedule.toJson() +
+            ",\"system\":" + systemSchedule.toJson() + "}";
+    }
+
+    public MetricsSnapshot getSnapshot() {
+        MetricsSnapshot current = snapshot;
+        if (current != null && !current.isOlderThan(maxAgeMillis)) {
+            return current;
+        }
+        return refresh(true).join();
+    }
+
+    private void tick(boolean force) {
+        try {
+            refresh(force).join();
+        } catch (Exception e) {
+            System.err.println("Error collecting metrics: " + e.getMessage());
+        }
+        scheduleNextTick();
+    }
+
+    /** Schedules the next tick for the first collector due, replacing the pending one. */
+    private void scheduleNextTick() {
+        long delay = Math.min(gpuSchedule.getNextDue(), systemSchedule.getNextDue()) - System.currentTimeMillis();
+        synchronized (tickLock) {
+            if (nextTick != null) {
+                nextTick.cancel(false);
+            }
+            if (!scheduler.isShutdown()) {
+                nextTick = scheduler.schedule(() -> tick(false), Math.max(10, delay), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Collects the collectors that are due and publishes a snapshot combining them with the
+     * last readings of the others. With {@code force} every collector whose minimum interval
+     * has elapsed is due; only the first snapshot runs them all unconditionally.
+     */
+    private CompletableFuture<MetricsSnapshot> refresh(boolean force) {
+        CompletableFuture<MetricsSnapshot> pending = new CompletableFuture<>();
+        CompletableFuture<MetricsSnapshot> existing = inFlight.compareAndExchange(null, pending);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            MetricsSnapshot previous = snapshot;
+            boolean gpuDue = previous == null || gpuSchedule.isDue(now, force);
+            boolean systemDue = previous == null || systemSchedule.isDue(now, force);
+            if (!gpuDue && !systemDue) {
+                pending.complete(previous);
+                return pending;
+            }
+            boolean active = isActive(lastActivity);
+
+            boolean newGpus = false;
+            List<GpuSample> gpus;
+            if (gpuDue) {
+                gpus = collectGpuSamples();
+                gpuSchedule.ran(now);
+                gpuSchedule.adjust(active, previous != null && gpusMoved(previous.getGpus(), gpus));
+                newGpus = gpus != lastGpuReading;
+                lastGpuReading = gpus;
+            } else {
+                gpus = previous.getGpus();
+            }
+            SystemSample system;
+            if (systemDue) {
+                system = getSystemInfo();
+                systemSchedule.ran(now);
+                systemSchedule.adjust(active, previous != null
+                    && Math.abs(system.getCpuUsage() - previous.getSystem().getCpuUsage()) > utilizationDelta);
+            } else {
+                system = previous.getSystem();
+            }
+
+            long timestamp = System.currentTimeMillis();
+            MetricsSnapshot next = new MetricsSnapshot(
+                sequence.incrementAndGet(),
+                timestamp,
+                gpus,
+                newGpus || previous == null ? timestamp : previous.getGpuTimestamp(),
+                system,
+                systemDue ? timestamp : previous.getSystemTimestamp(),
+                ollama.getLatest()
+            );
+            snapshot = next;
+            pending.complete(next);
+            notifyListeners(next);
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+        } finally {
+            inFlight.set(null);
+        }
+        return pending;
+    }
+
+    private boolean gpusMoved(List<GpuSample> before, List<GpuSample> after) {
+        for (GpuSample gpu : after) {
+            for (GpuSample old : before) {
+                if (old.getIndex() != gpu.getIndex()) continue;
+                if (Math.abs(gpu.getUtilization() - old.getUtilization()) > utilizationDelta
+                        || Math.abs(gpu.getPowerDraw() - old.getPowerDraw()) > powerDelta
+                        || Math.abs(gpu.getTemperature() - old.getTemperature()) > temperatureDelta) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void notifyListeners(MetricsSnapshot next) {
+        for (Consumer<MetricsSnapshot> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                System.err.println("Error in snapshot listener: " + e.getMessage());
+            }
+        }
+    }
+
+    private List<GpuSample> collectGpuSamples() {
+        long started = System.nanoTime();
+        List<GpuSample> samples = gpuCollector.collect();
+        Instrumentation.histogram("collector gpu").recordSince(started, samples.isEmpty());
+        return samples;
+    }
+
+    private List<GpuSample> executeNvidiaSmiCommand() {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(
+                nvidiaSmiCommand,
+                "--query-gpu=" + GpuSample.QUERY_FIELDS,
+                "--format=csv,noheader,nounits"
+            );
+            Process process = Instrumentation.start(pb);
+            
+            List<GpuSample> samples = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GpuSample sample = GpuSample.parse(line);
+                if (sample != null) {
+                    samples.add(sample);
+                }
+            }
+            reader.close();
+            
+            int exitCode = process.waitFor();
+            
+            if (exitCode == 0) {
+                return samples;
+            }
+        } catch (Exception e) {
+        }
+        return Collections.emptyList();
+    }
+
+    private SystemSample getSystemInfo() {
+        return collectSystem(null, false, null);
+    }
+
+    /**
+     * Returns the host metrics in {@code fields} (see {@link SystemSample#FIELDS}). They come
+     * from the current snapshot when it is fresh; otherwise only the collectors behind the
+     * requested fields run, without starting a full collection cycle. CPU usage and the
+     * container view are rates over the sampler's own period, so they still come from the
+     * last snapshot. Fields that were not collected are left at their defaults.
+     */
+    public SystemSample getSystemSample(Set<String> fields) {
+        MetricsSnapshot current = snapshot;
+        if (current != null && !current.isOlderThan(maxAgeMillis)) {
+            return current.getSystem();
+        }
+        return collectSystem(fields, true, current == null ? null : current.getSystem());
+    }
+
+    /**
+     * Returns the last snapshot without ever collecting, or {@code null} before the first one.
+     */
+    public MetricsSnapshot peekSnapshot() {
+        return snapshot;
+    }
+
+    /** The source of GPU readings selected by {@code gpumonitor.gpu.mode}. */
+    public GpuCollector getGpuCollector() {
+        return gpuCollector;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /** Longest interval any collector is currently running at. */
+    public long getEffectiveIntervalMillis() {
+        return Math.max(gpuSchedule.getEffectiveInterval(), systemSchedule.getEffectiveInterval());
+    }
+
+    private static boolean wants(Set<String> fields, String... names) {
+        if (fields == null) return true;
+        for (String name : names) {
+            if (fields.contains(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Collects the fields in {@code fields}, or all of them if it is {@code null}. With
+     * {@code onDemand}, the CPU and cgroup readers are left alone and their values are copied
+     * from {@code previous}, if any: they measure the time since their last call, and sampling
+     * them here would leave the next background sample a window of a few milliseconds.
+     */
+    private synchronized SystemSample collectSystem(Set<String> fields, boolean onDemand, SystemSample previous) {
+        long started = System.nanoTime();
+        double cpuUsage = 0;
+        double[] coreUsage = new double[0];
+        if (onDemand) {
+            if (previous != null && wants(fields, "cpuUsage", "cpuCoreUsage")) {
+                cpuUsage = previous.getCpuUsage();
+                coreUsage = new double[previous.getCoreCount()];
+                for (int core = 0; core < coreUsage.length; core++) {
+                    coreUsage[core] = previous.getCoreUsage(core);
+                }
+            }
+        } else if (wants(fields, "cpuUsage", "cpuCoreUsage")) {
+            boolean cpuSampled = cpuStat.sample();
+            if (cpuSampled) {
+                cpuUsage = cpuStat.getUsage();
+                coreUsage = new double[cpuStat.getCoreCount()];
+                for (int core = 0; core < coreUsage.length; core++) {
+                    coreUsage[core] = cpuStat.getCoreUsage(core);
+                }
+            }
+            started = lap("collector cpu", started, !cpuSampled);
+        }
+        
+        double ramUsed = 0, ramTotal = 0, ramPercentage = 0;
+        boolean wantsContainer = cgroup != null && !onDemand && wants(fields, "container");
+        long hostMemoryKb = 0;
+        // The container view also needs the host total, for a group without a memory limit
+        if (wantsContainer || wants(fields, "ramUsed", "ramTotal", "ramPercentage")) {
+            boolean memSampled = memInfo.sample();
+            if (memSampled) {
+                long total = memInfo.getTotalKb();
+                hostMemoryKb = total;
+                long used = memInfo.getUsedKb();
+                ramTotal = total / (1024.0 * 1024.0);
+                ramUsed = used / (1024.0 * 1024.0);
+                ramPercentage = (double) used / total * 100;
+            }
+            started = lap("collector memory", started, !memSampled);
+        }
+        
+        double diskUsed = 0, diskTotal = 0, diskPercentage = 0;
+        if (wants(fields, "diskUsed", "diskTotal", "diskPercentage")) {
+            try {
+                File root = new File("/");
+                long total = root.getTotalSpace();
+                long free = root.getFreeSpace();
+                long used = total - free;
+                
+                if (total > 0) {
+                    diskTotal = total / (1024.0 * 1024.0 * 1024.0);
+                    diskUsed = used / (1024.0 * 1024.0 * 1024.0);
+                    diskPercentage = (double) used / total * 100;
+                }
+            } catch (Exception e) {
+                diskUsed = 0;
+                diskTotal = 0;
+                diskPercentage = 0;
+            }
+            started = lap("collector disk", started, diskTotal == 0);
+        }
+        
+        double cpuTemp = 0;
+        if (wants(fields, "cpuTemp")) {
+            String[] paths = {
+                "/sys/class/thermal/thermal_zone0/temp",
+                "/sys/class/thermal/thermal_zone1/temp"
+            };
+            
+            for (String path : paths) {
+                try {
+                    BufferedReader reader = new BufferedReader(new FileReader(path));
+                    String temp = reader.readLine();
+                    reader.close();
+                    if (temp != null) {
+                        double tempValue = Double.parseDouble(temp.trim()) / 1000.0;
+                        if (tempValue > 0 && tempValue < 150) {
+                            cpuTemp = tempValue;
+                            break;
+                        }
+                    }
+                } catch (Exception ignored) {}
+            }
+            started = lap("collector thermal", started, false);
+        }
+
+        CgroupSample container = onDemand && previous != null && wants(fields, "container") ? previous.getContainer() : null;
+        if (wantsContainer) {
+            boolean cgroupSampled = cgroup.sample();
+            if (cgroupSampled) {
+                int hostCores = cpuStat.getCoreCount() > 0 ? cpuStat.getCoreCount() : cpuCores;
+                container = new CgroupSample(cgroup.getDirectory().toString(), cgroup, hostCores,
+                    hostMemoryKb * 1024);
+            }
+            started = lap("collector cgroup", started, !cgroupSampled);
+        }
+        
+        String uptime = "Unknown";
+        if (wants(fields, "uptime")) {
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader(procRoot.resolve("uptime").toFile()));
+                String line = reader.readLine();
+                reader.close();
+                if (line != null) {
+                    double uptimeSeconds = Double.parseDouble(line.split(" ")[0]);
+                    long hours = (long) (uptimeSeconds / 3600);
+                    long minutes = (long) ((uptimeSeconds % 3600) / 60);
+                    uptime = (hours > 0 ? hours + "h " : "") + minutes + "m";
+                }
+            } catch (Exception e) {
+                uptime = "Unknown";
+            }
+        }
+        
+        String loadAvg = "0.00 0.00 0.00";
+        if (wants(fields, "loadAvg")) {
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader(procRoot.resolve("loadavg").toFile()));
+                String line = reader.readLine();
+                reader.close();
+                if (line != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length >= 3) {
+                        loadAvg = parts[0] + " " + parts[1] + " " + parts[2];
+                    }
+                }
+            } catch (Exception e) {
+                loadAvg = "0.00 0.00 0.00";
+            }
+        }
+        if (wants(fields, "uptime", "loadAvg")) {
+            lap("collector host", started, "Unknown".equals(uptime) && wants(fields, "uptime"));
+        }
+        
+        return new SystemSample(
+            cpuUsage, coreUsage,
+            ramUsed, ramTotal, ramPercentage,
+            diskUsed, diskTotal, diskPercentage, cpuTemp,
+            loadAvg, osInfo, hostname, uptime, cpuCores, container
+        );
+    }
+
+    private static String readHostname() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/etc/hostname"))) {
+            String h = reader.readLine();
+            if (h != null && !h.trim().isEmpty()) {
+                return h.trim();
+            }
+        } catch (Exception e) {
+        }
+        return "Unknown";
+    }
+
+    private static String readOsInfo() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/etc/os-release"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("PRETTY_NAME=")) {
+                    return line.substring(13).replace("\"", "");
+                }
+            }
+        } catch (Exception e) {
+        }
+        return "Unknown";
+    }
+
+    /** Records the time since {@code started} under {@code name} and returns the current time. */
+    private static long lap(String name, long started, boolean error) {
+        long now = System.nanoTime();
+        Instrumentation.histogram(name).record(now - started, error);
+        return now;
+    }
+}
@@ -0,0 +1,122 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.List;
+
+/**
+ * Immutable result of one collection cycle, shared by every request handler. A cycle only
+ * runs the collectors that are due and reuses the last readings of the others, so each part
+ * also carries the time its reading was taken.
+ */
+public final class MetricsSnapshot {
+    private final long sequence;
+    private final long timestamp;
+    private final long gpuTimestamp;
+    private final long systemTimestamp;
+    private final List<GpuSample> gpus;
+    private final String gpuInfo;
+    private final SystemSample system;
+    private final OllamaSample ollama;
+    private final String ollamaJson;
+    private final String json;
+
+    public MetricsSnapshot(long sequence, long timestamp, List<GpuSample> gpus, SystemSample system, OllamaSample ollama) {
+        this(sequence, timestamp, gpus, timestamp, system, timestamp, ollama);
+    }
+
+    /**
+     * @param gpuTimestamp    when {@code gpus} was read, earlier than {@code timestamp} if reused
+     * @param systemTimestamp when {@code system} was read
+     */
+    public MetricsSnapshot(long sequence, long timestamp, List<GpuSample> gpus, long gpuTimestamp,
+                           SystemSample system, long systemTimestamp, OllamaSample ollama) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.gpuTimestamp = gpuTimestamp;
+        this.systemTimestamp = systemTimestamp;
+        this.gpus = List.copyOf(gpus);
+        this.gpuInfo = formatGpuInfo(this.gpus);
+        this.system = system;
+        this.ollama = ollama;
+        this.ollamaJson = ollama.toJson(this.gpus);
+        this.json = "{" +
+            "\"sequence\":" + sequence + "," +
+            "\"timestamp\":" + timestamp + "," +
+            "\"gpu\":" + Json.quote(gpuInfo) + "," +
+            "\"system\":" + system.toJson() + "," +
+            "\"ollama\":" + Json.quote(ollama.getStatus()) + "," +
+            "\"ollamaRuntime\":" + ollamaJson +
+            "}";
+    }
+
+    private static String formatGpuInfo(List<GpuSample> gpus) {
+        if (gpus.isEmpty()) {
+            return "GPU Not Available,0,0,0,0,0,0";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (GpuSample gpu : gpus) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(gpu.toCsv());
+        }
+        return sb.toString();
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** When the GPU readings were taken. */
+    public long getGpuTimestamp() {
+        return gpuTimestamp;
+    }
+
+    /** When the system readings were taken. */
+    public long getSystemTimestamp() {
+        return systemTimestamp;
+    }
+
+    public List<GpuSample> getGpus() {
+        return gpus;
+    }
+
+    public String getGpuInfo() {
+        return gpuInfo;
+    }
+
+    public SystemSample getSystem() {
+        return system;
+    }
+
+    public String getSystemInfo() {
+        return system.toJson();
+    }
+
+    public String getOllamaStatus() {
+        return ollama.getStatus();
+    }
+
+    public OllamaSample getOllama() {
+        return ollama;
+    }
+
+    /**
+     * Loaded Ollama models and the GPU memory they hold, as served on {@code /ollama/models}.
+     */
+    public String getOllamaJson() {
+        return ollamaJson;
+    }
+
+    /**
+     * Everything the dashboard shows, as pushed on {@code /stream}.
+     */
+    public String toJson() {
+        return json;
+    }
+
+    public boolean isOlderThan(long maxAgeMillis) {
+        return System.currentTimeMillis() - timestamp > maxAgeMillis;
+    }
+}
@@ -0,0 +1,71 @@
+package fr.lejiww.gpumonitor;
+
+/**
+ * The long-lived components shared by every connection.
+ */
+public final class MonitorServices {
+    private final MetricsSampler sampler;
+    private final SnapshotBroadcaster broadcaster;
+    private final MetricHistory history;
+    private final MetricStore store;
+    private final OllamaController ollama;
+    private final AlertEngine alerts;
+    private final FleetAggregator fleet;
+    private final GpuProcessCollector processes;
+    private final PrometheusExporter prometheus = new PrometheusExporter();
+
+    public MonitorServices(MetricsSampler sampler, SnapshotBroadcaster broadcaster, MetricHistory history,
+                           MetricStore store, OllamaController ollama, AlertEngine alerts,
+                           FleetAggregator fleet, GpuProcessCollector processes) {
+        this.sampler = sampler;
+        this.broadcaster = broadcaster;
+        this.history = history;
+        this.store = store;
+        this.ollama = ollama;
+        this.alerts = alerts;
+        this.fleet = fleet;
+        this.processes = processes;
+    }
+
+    public MetricsSampler getSampler() {
+        return sampler;
+    }
+
+    public SnapshotBroadcaster getBroadcaster() {
+        return broadcaster;
+    }
+
+    public MetricHistory getHistory() {
+        return history;
+    }
+
+    public OllamaController getOllama() {
+        return ollama;
+    }
+
+    public AlertEngine getAlerts() {
+        return alerts;
+    }
+
+    public GpuProcessCollector getProcesses() {
+        return processes;
+    }
+
+    public PrometheusExporter getPrometheus() {
+        return prometheus;
+    }
+
+    /**
+     * Returns the peer aggregator, or {@code null} when no peers are configured.
+     */
+    public FleetAggregator getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Returns the on-disk store, or {@code null} when persistence is disabled.
+     */
+    public MetricStore getStore() {
+        return store;
+    }
+}
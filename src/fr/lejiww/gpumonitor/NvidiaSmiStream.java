@@ -0,0 +1,155 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps a single {@code nvidia-smi -lms} process running and parses its CSV output as
+ * lines arrive. Each complete set of per-GPU lines is published as the latest samples.
+ * If the child exits it is restarted with exponential backoff.
+ */
+public class NvidiaSmiStream implements Runnable, GpuCollector {
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final String command;
+    private final long loopMillis;
+    private volatile List<GpuSample> latest = Collections.emptyList();
+    private volatile long lastUpdate;
+    private volatile boolean running;
+    private volatile Process process;
+    private Thread thread;
+
+    public NvidiaSmiStream(String command, long loopMillis) {
+        this.command = command;
+        this.loopMillis = loopMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, "nvidia-smi-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Process current = process;
+        if (current != null) {
+            current.destroy();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /** Returns the last complete set of samples if it is at most two intervals old. */
+    @Override
+    public List<GpuSample> collect() {
+        return getLatestSamples(loopMillis * 2);
+    }
+
+    /**
+     * Returns the last complete set of samples, or an empty list if nothing was published
+     * within {@code maxAgeMillis}.
+     */
+    public List<GpuSample> getLatestSamples(long maxAgeMillis) {
+        if (System.currentTimeMillis() - lastUpdate > maxAgeMillis) {
+            return Collections.emptyList();
+        }
+        return latest;
+    }
+
+    @Override
+    public void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            try {
+                ProcessBuilder pb = new ProcessBuilder(
+                    command,
+                    "--query-gpu=" + GpuSample.QUERY_FIELDS,
+                    "--format=csv,noheader,nounits",
+                    "-lms", Long.toString(loopMillis)
+                );
+                pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+                process = Instrumentation.start(pb);
+                System.out.println("nvidia-smi stream started (loop " + loopMillis + " ms)");
+
+                if (readSamples(process)) {
+                    backoff = MIN_BACKOFF_MILLIS;
+                }
+                int exitCode = process.waitFor();
+                if (running) {
+                    System.err.println("nvidia-smi stream exited with code " + exitCode);
+                }
+            } catch (IOException e) {
+                System.err.println("Error starting nvidia-smi stream: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                Process current = process;
+                if (current != null) {
+                    current.destroy();
+                }
+            }
+
+            if (!running) return;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private boolean readSamples(Process process) throws IOException {
+        boolean published = false;
+        int expected = 0;
+        int lastIndex = -1;
+        List<GpuSample> batch = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GpuSample sample = GpuSample.parse(line);
+                if (sample == null) continue;
+
+                // nvidia-smi prints every device in index order, then sleeps: a lower or equal
+                // index starts a new round, which also tells us how many devices there are.
+                if (sample.getIndex() <= lastIndex && !batch.isEmpty()) {
+                    expected = batch.size();
+                    publish(batch);
+                    published = true;
+                    batch = new ArrayList<>();
+                }
+                batch.add(sample);
+                lastIndex = sample.getIndex();
+
+                if (expected > 0 && batch.size() == expected) {
+                    publish(batch);
+                    published = true;
+                    batch = new ArrayList<>();
+                    lastIndex = -1;
+                }
+            }
+        }
+        return published;
+    }
+
+    private void publish(List<GpuSample> batch) {
+        latest = Collections.unmodifiableList(batch);
+        lastUpdate = System.currentTimeMillis();
+    }
+}
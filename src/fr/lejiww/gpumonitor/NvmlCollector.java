@@ -0,0 +1,338 @@
+package fr.lejiww.gpumonitor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads GPU metrics straight from {@code libnvidia-ml.so} through the foreign function API,
+ * without a child process or any text parsing. Device handles, names and UUIDs are looked up
+ * once; every sample then only makes the per-metric NVML calls into output buffers that are
+ * allocated once, when the library is loaded. It also lists the compute processes on each
+ * GPU for {@link GpuProcessCollector}, so that no nvidia-smi runs at all in this mode.
+ *
+ * <p>Every handle is adapted once to take segments as {@code Object} and is called with
+ * {@code invokeExact}, so a sample neither boxes its arguments and results nor builds
+ * argument arrays.
+ *
+ * <p>The foreign function API is reached through reflection and method handles so that the
+ * rest of the monitor still builds and runs on Java 17. It needs Java 21 or later;
+ * {@link #load(String)} returns {@code null} on older runtimes, or when the library cannot be
+ * loaded or initialised.
+ */
+final class NvmlCollector implements GpuCollector {
+    private static final int NVML_SUCCESS = 0;
+    private static final int NVML_TEMPERATURE_GPU = 0;
+    private static final int STRING_BUFFER_SIZE = 96;
+    private static final int NVML_ERROR_INSUFFICIENT_SIZE = 7;
+    // nvmlProcessInfo_t (v3) is {uint pid, ulonglong usedGpuMemory, uint gpuInstanceId, uint computeInstanceId}
+    private static final int PROCESS_INFO_SIZE = 24;
+    private static final int MAX_PROCESSES = 256;
+    private static final long NVML_VALUE_NOT_AVAILABLE = -1;
+    private static final double MIB = 1024.0 * 1024.0;
+
+    private final AutoCloseable arena;
+    private final MethodHandle shutdown;
+    private final MethodHandle getTemperature;
+    private final MethodHandle getUtilization;
+    private final MethodHandle getMemoryInfo;
+    private final MethodHandle getPowerUsage;
+    private final MethodHandle getPowerLimit;
+    // null with drivers older than the _v3 entry point
+    private final MethodHandle getComputeProcesses;
+    private final MethodHandle readInt;
+    private final MethodHandle writeInt;
+    private final MethodHandle readLong;
+
+    // Output buffers shared by every call: nvmlUtilization_t is {uint gpu, uint memory},
+    // nvmlMemory_t is {ulonglong total, free, used}
+    private final Object intBuffer;
+    private final Object utilizationBuffer;
+    private final Object memoryBuffer;
+    private final Object processBuffer;
+
+    private final int[] indexes;
+    private final Object[] devices;
+    private final String[] names;
+    private final String[] uuids;
+    private boolean stopped;
+
+    private NvmlCollector(Ffm ffm, Object arena, Object lookup) throws Throwable {
+        this.arena = (AutoCloseable) arena;
+        MethodHandle init = ffm.downcall(lookup, "nvmlInit_v2");
+        this.shutdown = ffm.downcall(lookup, "nvmlShutdown");
+        MethodHandle getCount = ffm.downcall(lookup, "nvmlDeviceGetCount_v2", ffm.address);
+        MethodHandle getHandle = ffm.downcall(lookup, "nvmlDeviceGetHandleByIndex_v2", ffm.javaInt, ffm.address);
+        MethodHandle getName = ffm.downcall(lookup, "nvmlDeviceGetName", ffm.address, ffm.address, ffm.javaInt);
+        MethodHandle getUuid = ffm.downcall(lookup, "nvmlDeviceGetUUID", ffm.address, ffm.address, ffm.javaInt);
+        this.getTemperature = ffm.downcall(lookup, "nvmlDeviceGetTemperature", ffm.address, ffm.javaInt, ffm.address);
+        this.getUtilization = ffm.downcall(lookup, "nvmlDeviceGetUtilizationRates", ffm.address, ffm.address);
+        this.getMemoryInfo = ffm.downcall(lookup, "nvmlDeviceGetMemoryInfo", ffm.address, ffm.address);
+        this.getPowerUsage = ffm.downcall(lookup, "nvmlDeviceGetPowerUsage", ffm.address, ffm.address);
+        this.getPowerLimit = ffm.downcall(lookup, "nvmlDeviceGetEnforcedPowerLimit", ffm.address, ffm.address);
+        this.getComputeProcesses = ffm.optionalDowncall(lookup, "nvmlDeviceGetComputeRunningProcesses_v3",
+            ffm.address, ffm.address, ffm.address);
+        this.readInt = ffm.reader(int.class, "java.lang.foreign.ValueLayout$OfInt", ffm.javaInt);
+        this.writeInt = ffm.writer(int.class, "java.lang.foreign.ValueLayout$OfInt", ffm.javaInt);
+        this.readLong = ffm.reader(long.class, "java.lang.foreign.ValueLayout$OfLong", ffm.javaLong);
+        MethodHandle readByte = ffm.reader(byte.class, "java.lang.foreign.ValueLayout$OfByte", ffm.javaByte);
+        MethodHandle readAddress = ffm.reader(ffm.memorySegment, "java.lang.foreign.AddressLayout", ffm.address);
+
+        this.intBuffer = ffm.allocate(arena, 8);
+        this.utilizationBuffer = ffm.allocate(arena, 8);
+        this.memoryBuffer = ffm.allocate(arena, 24);
+        this.processBuffer = ffm.allocate(arena, (long) PROCESS_INFO_SIZE * MAX_PROCESSES);
+        Object handleBuffer = ffm.allocate(arena, 8);
+        Object stringBuffer = ffm.allocate(arena, STRING_BUFFER_SIZE);
+
+        check((int) init.invokeExact(), "nvmlInit_v2");
+        check((int) getCount.invokeExact(intBuffer), "nvmlDeviceGetCount_v2");
+        int count = (int) readInt.invokeExact(intBuffer, 0L);
+
+        List<Integer> deviceIndexes = new ArrayList<>();
+        List<Object> handles = new ArrayList<>();
+        List<String> deviceNames = new ArrayList<>();
+        List<String> deviceUuids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if ((int) getHandle.invokeExact(i, handleBuffer) != NVML_SUCCESS) {
+                System.err.println("NVML: no handle for GPU " + i);
+                continue;
+            }
+            Object device = (Object) readAddress.invokeExact(handleBuffer, 0L);
+            deviceIndexes.add(i);
+            handles.add(device);
+            deviceNames.add((int) getName.invokeExact(device, stringBuffer, STRING_BUFFER_SIZE) == NVML_SUCCESS
+                ? readString(readByte, stringBuffer) : "Unknown GPU");
+            deviceUuids.add((int) getUuid.invokeExact(device, stringBuffer, STRING_BUFFER_SIZE) == NVML_SUCCESS
+                ? readString(readByte, stringBuffer) : "");
+        }
+        this.indexes = deviceIndexes.stream().mapToInt(Integer::intValue).toArray();
+        this.devices = handles.toArray();
+        this.names = deviceNames.toArray(new String[0]);
+        this.uuids = deviceUuids.toArray(new String[0]);
+    }
+
+    /**
+     * Loads and initialises NVML from {@code library} (a soname or a path), or returns
+     * {@code null} with the reason logged if that is not possible.
+     */
+    static GpuCollector load(String library) {
+        Object arena = null;
+        try {
+            Ffm ffm = new Ffm();
+            arena = ffm.arenaClass.getMethod("ofShared").invoke(null);
+            Object lookup = ffm.symbolLookup.getMethod("libraryLookup", String.class, ffm.arenaClass)
+                .invoke(null, library, arena);
+            NvmlCollector collector = new NvmlCollector(ffm, arena, lookup);
+            System.out.println("NVML loaded from " + library + " (" + collector.devices.length + " GPUs)");
+            return collector;
+        } catch (Throwable e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            System.err.println("Cannot use NVML from " + library + ": " + cause);
+            if (arena != null) {
+                try {
+                    ((AutoCloseable) arena).close();
+                } catch (Exception ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized List<GpuSample> collect() {
+        if (stopped || devices.length == 0) {
+            return Collections.emptyList();
+        }
+        List<GpuSample> samples = new ArrayList<>(devices.length);
+        try {
+            for (int i = 0; i < devices.length; i++) {
+                Object device = devices[i];
+                double temperature = 0;
+                if ((int) getTemperature.invokeExact(device, NVML_TEMPERATURE_GPU, intBuffer) == NVML_SUCCESS) {
+                    temperature = readUnsigned(intBuffer, 0);
+                }
+                double utilization = 0;
+                if ((int) getUtilization.invokeExact(device, utilizationBuffer) == NVML_SUCCESS) {
+                    utilization = readUnsigned(utilizationBuffer, 0);
+                }
+                double memoryUsed = 0;
+                double memoryTotal = 0;
+                if ((int) getMemoryInfo.invokeExact(device, memoryBuffer) == NVML_SUCCESS) {
+                    memoryTotal = (long) readLong.invokeExact(memoryBuffer, 0L) / MIB;
+                    memoryUsed = (long) readLong.invokeExact(memoryBuffer, 16L) / MIB;
+                }
+                // Power is reported in milliwatts and is not supported on every board
+                double powerDraw = 0;
+                if ((int) getPowerUsage.invokeExact(device, intBuffer) == NVML_SUCCESS) {
+                    powerDraw = readUnsigned(intBuffer, 0) / 1000.0;
+                }
+                double powerLimit = 0;
+                if ((int) getPowerLimit.invokeExact(device, intBuffer) == NVML_SUCCESS) {
+                    powerLimit = readUnsigned(intBuffer, 0) / 1000.0;
+                }
+                samples.add(new GpuSample(indexes[i], uuids[i], names[i], temperature, utilization,
+                    Math.round(memoryUsed), Math.round(memoryTotal), powerDraw, powerLimit));
+            }
+        } catch (Throwable e) {
+            System.err.println("Error reading NVML: " + e);
+            return Collections.emptyList();
+        }
+        return samples;
+    }
+
+    @Override
+    public boolean listsComputeApps() {
+        return getComputeProcesses != null;
+    }
+
+    @Override
+    public synchronized Map<Integer, Map<String, Long>> collectComputeApps() {
+        if (stopped || getComputeProcesses == null) {
+            return null;
+        }
+        Map<Integer, Map<String, Long>> result = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < devices.length; i++) {
+                writeInt.invokeExact(intBuffer, 0L, MAX_PROCESSES);
+                int status = (int) getComputeProcesses.invokeExact(devices[i], intBuffer, processBuffer);
+                if (status == NVML_ERROR_INSUFFICIENT_SIZE) {
+                    System.err.println("NVML: more than " + MAX_PROCESSES + " processes on GPU " + indexes[i]);
+                    continue;
+                }
+                if (status != NVML_SUCCESS) {
+                    return null;
+                }
+                long count = Math.min(readUnsigned(intBuffer, 0), MAX_PROCESSES);
+                for (long p = 0; p < count; p++) {
+                    long offset = p * PROCESS_INFO_SIZE;
+                    int pid = (int) readInt.invokeExact(processBuffer, offset);
+                    long used = (long) readLong.invokeExact(processBuffer, offset + 8);
+                    // Not available under MIG or without the permission to see it
+                    if (used == NVML_VALUE_NOT_AVAILABLE) continue;
+                    result.computeIfAbsent(pid, key -> new HashMap<>()).merge(uuids[i], Math.round(used / MIB), Long::sum);
+                }
+            }
+        } catch (Throwable e) {
+            System.err.println("Error reading NVML processes: " + e);
+            return null;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stopped) return;
+        stopped = true;
+        try {
+            int status = (int) shutdown.invokeExact();
+            if (status != NVML_SUCCESS) {
+                System.err.println("NVML: nvmlShutdown returned " + status);
+            }
+            arena.close();
+        } catch (Throwable e) {
+            System.err.println("Error shutting down NVML: " + e);
+        }
+    }
+
+    private long readUnsigned(Object segment, long offset) throws Throwable {
+        return Integer.toUnsignedLong((int) readInt.invokeExact(segment, offset));
+    }
+
+    private static String readString(MethodHandle readByte, Object segment) throws Throwable {
+        StringBuilder sb = new StringBuilder();
+        for (long i = 0; i < STRING_BUFFER_SIZE; i++) {
+            byte b = (byte) readByte.invokeExact(segment, i);
+            if (b == 0) break;
+            sb.append((char) (b & 0xff));
+        }
+        return sb.toString().trim();
+    }
+
+    private static void check(int result, String function) {
+        if (result != NVML_SUCCESS) {
+            throw new IllegalStateException(function + " returned " + result);
+        }
+    }
+
+    /** Reflective entry points into {@code java.lang.foreign}. */
+    private static final class Ffm {
+        final Class<?> arenaClass = Class.forName("java.lang.foreign.Arena");
+        final Class<?> symbolLookup = Class.forName("java.lang.foreign.SymbolLookup");
+        final Class<?> memorySegment = Class.forName("java.lang.foreign.MemorySegment");
+        final Class<?> memoryLayout = Class.forName("java.lang.foreign.MemoryLayout");
+        final Class<?> valueLayout = Class.forName("java.lang.foreign.ValueLayout");
+        final Class<?> functionDescriptor = Class.forName("java.lang.foreign.FunctionDescriptor");
+        final Class<?> linkerClass = Class.forName("java.lang.foreign.Linker");
+        final Class<?> linkerOption = Class.forName("java.lang.foreign.Linker$Option");
+        final Object linker = linkerClass.getMethod("nativeLinker").invoke(null);
+        final Object javaByte = valueLayout.getField("JAVA_BYTE").get(null);
+        final Object javaInt = valueLayout.getField("JAVA_INT").get(null);
+        final Object javaLong = valueLayout.getField("JAVA_LONG").get(null);
+        final Object address = valueLayout.getField("ADDRESS").get(null);
+
+        Ffm() throws ReflectiveOperationException {
+        }
+
+        /** Returns a handle to a C function returning {@code int} (an {@code nvmlReturn_t}). */
+        MethodHandle downcall(Object lookup, String name, Object... argumentLayouts) throws ReflectiveOperationException {
+            Optional<?> symbol = (Optional<?>) symbolLookup.getMethod("find", String.class).invoke(lookup, name);
+            if (symbol.isEmpty()) {
+                throw new IllegalStateException("missing symbol " + name);
+            }
+            Object layouts = Array.newInstance(memoryLayout, argumentLayouts.length);
+            for (int i = 0; i < argumentLayouts.length; i++) {
+                Array.set(layouts, i, argumentLayouts[i]);
+            }
+            Object descriptor = functionDescriptor.getMethod("of", memoryLayout, layouts.getClass())
+                .invoke(null, javaInt, layouts);
+            Object options = Array.newInstance(linkerOption, 0);
+            return erase((MethodHandle) linkerClass.getMethod("downcallHandle", memorySegment, functionDescriptor,
+                options.getClass()).invoke(linker, symbol.get(), descriptor, options));
+        }
+
+        /** Like {@link #downcall}, but returns {@code null} when the library lacks the function. */
+        MethodHandle optionalDowncall(Object lookup, String name, Object... argumentLayouts) throws ReflectiveOperationException {
+            try {
+                return downcall(lookup, name, argumentLayouts);
+            } catch (IllegalStateException e) {
+                return null;
+            }
+        }
+
+        /** Returns {@code (segment, offset) -> segment.get(layout, offset)}. */
+        MethodHandle reader(Class<?> type, String layoutType, Object layout) throws ReflectiveOperationException {
+            MethodHandle get = MethodHandles.publicLookup().findVirtual(memorySegment, "get",
+                MethodType.methodType(type, Class.forName(layoutType), long.class));
+            return erase(MethodHandles.insertArguments(get, 1, layout));
+        }
+
+        /** Returns {@code (segment, offset, value) -> segment.set(layout, offset, value)}. */
+        MethodHandle writer(Class<?> type, String layoutType, Object layout) throws ReflectiveOperationException {
+            MethodHandle set = MethodHandles.publicLookup().findVirtual(memorySegment, "set",
+                MethodType.methodType(void.class, Class.forName(layoutType), long.class, type));
+            return erase(MethodHandles.insertArguments(set, 1, layout));
+        }
+
+        /**
+         * Types every {@code MemorySegment} in {@code handle} as {@code Object}, which is what this
+         * class holds segments as, so that it can be called with {@code invokeExact}.
+         */
+        private static MethodHandle erase(MethodHandle handle) {
+            return handle.asType(handle.type().erase());
+        }
+
+        Object allocate(Object arena, long size) throws ReflectiveOperationException {
+            return arenaClass.getMethod("allocate", long.class, long.class).invoke(arena, size, 8L);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the local Ollama HTTP API on its own schedule and keeps the latest
+ * {@link OllamaSample}, which the sampler copies into every snapshot. {@code /api/ps} is read
+ * on every poll; {@code /api/tags} (installed models) once a minute; {@code /api/show} once per
+ * loaded model, to learn which blob its runner process loads. Runner processes are then found
+ * among the GPU processes last listed by {@link GpuProcessCollector} through their
+ * {@code --model} argument, which gives the memory each model holds on each GPU.
+ *
+ * <p>{@code systemctl is-active ollama} is only run when the API does not answer, to tell a
+ * stopped service from a failed or starting one.
+ */
+public class OllamaCollector {
+    private static final long TAGS_INTERVAL_MILLIS = 60000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(3);
+
+    private final URI baseUri;
+    private final long intervalMillis;
+    private final GpuProcessCollector processes;
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, String> blobByDigest = new HashMap<>();
+    private long tagsFetchedAt;
+    private int installedModels;
+    private long installedBytes;
+    private volatile OllamaSample latest = OllamaSample.UNKNOWN;
+
+    public OllamaCollector(URI baseUri, long intervalMillis, GpuProcessCollector processes) {
+        this.baseUri = baseUri;
+        this.intervalMillis = intervalMillis;
+        this.processes = processes;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ollama-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public OllamaSample getLatest() {
+        return latest;
+    }
+
+    private void refresh() {
+        long started = System.nanoTime();
+        try {
+            latest = collect();
+            Instrumentation.histogram("collector ollama").recordSince(started, false);
+        } catch (Exception e) {
+            latest = new OllamaSample(getServiceStatus(), false, List.of(), installedModels, installedBytes);
+            Instrumentation.histogram("collector ollama").recordSince(started, true);
+        }
+    }
+
+    private OllamaSample collect() throws IOException, InterruptedException {
+        Object ps = get("/api/ps");
+        long now = System.currentTimeMillis();
+        if (now - tagsFetchedAt > TAGS_INTERVAL_MILLIS) {
+            Object tags = get("/api/tags");
+            List<?> installed = Json.listField(tags, "models");
+            long bytes = 0;
+            for (Object model : installed) {
+                bytes += Json.longField(model, "size");
+            }
+            installedModels = installed.size();
+            installedBytes = bytes;
+            tagsFetchedAt = now;
+        }
+
+        List<?> loaded = Json.listField(ps, "models");
+        Map<String, Map<String, Long>> memoryByBlob = loaded.isEmpty() ? Map.of() : getGpuMemoryByBlob();
+        List<OllamaSample.LoadedModel> models = new ArrayList<>(loaded.size());
+        Set<String> loadedDigests = new HashSet<>();
+        for (Object model : loaded) {
+            String name = Json.stringField(model, "name");
+            String digest = Json.stringField(model, "digest");
+            Object details = Json.field(model, "details");
+            String blob = digest == null ? null : blobByDigest.get(digest);
+            if (digest != null && blob == null && name != null) {
+                blob = getModelBlob(name);
+                if (blob != null) {
+                    blobByDigest.put(digest, blob);
+                }
+            }
+            if (digest != null) {
+                loadedDigests.add(digest);
+            }
+            Map<String, Long> gpuMemory = blob == null ? null : memoryByBlob.get(blob);
+            models.add(new OllamaSample.LoadedModel(
+                name == null ? "unknown" : name,
+                digest == null ? "" : digest,
+                valueOrEmpty(Json.stringField(details, "parameter_size")),
+                valueOrEmpty(Json.stringField(details, "quantization_level")),
+                Json.longField(model, "size"),
+                Json.longField(model, "size_vram"),
+                valueOrEmpty(Json.stringField(model, "expires_at")),
+                gpuMemory == null ? Map.of() : gpuMemory));
+        }
+        blobByDigest.keySet().retainAll(loadedDigests);
+        return new OllamaSample("active", true, models, installedModels, installedBytes);
+    }
+
+    /** Returns the file name of the model's weights blob, or {@code null} if it cannot be found. */
+    private String getModelBlob(String name) {
+        try {
+            Object show = send(HttpRequest.newBuilder(baseUri.resolve("/api/show"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"model\":" + Json.quote(name) + "}"))
+                .build());
+            String modelfile = Json.stringField(show, "modelfile");
+            if (modelfile != null) {
+                for (String line : modelfile.split("\n")) {
+                    if (line.startsWith("FROM ")) {
+                        return fileName(line.substring(5).trim());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error reading Ollama model " + name + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Maps each model blob loaded by a GPU process to the memory that process holds, by GPU
+     * UUID, from the last poll of the process collector. Processes whose command line could
+     * not be read (another PID namespace) are left out.
+     */
+    private Map<String, Map<String, Long>> getGpuMemoryByBlob() {
+        Map<String, Map<String, Long>> result = new HashMap<>();
+        for (GpuProcessSample.GpuProcess process : processes.getLatest().getProcesses()) {
+            String blob = getModelBlobArgument(process.getCommand());
+            if (blob == null) continue;
+            Map<String, Long> memory = result.computeIfAbsent(blob, b -> new HashMap<>());
+            for (Map.Entry<String, Long> gpu : process.getGpuMemoryMiB().entrySet()) {
+                memory.merge(gpu.getKey(), gpu.getValue(), Long::sum);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the file name passed as {@code --model} to a runner process, if any. */
+    private static String getModelBlobArgument(String command) {
+        String[] args = command.split(" ");
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("--model".equals(args[i]) || "-m".equals(args[i])) {
+                return fileName(args[i + 1]);
+            }
+        }
+        return null;
+    }
+
+    private String getServiceStatus() {
+        try {
+            ProcessBuilder pb = new ProcessBuilder("systemctl", "is-active", "ollama");
+            Process process = Instrumentation.start(pb);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String status = reader.readLine();
+            reader.close();
+            process.waitFor();
+
+            if (status != null) return status;
+        } catch (Exception e) {
+        }
+        return "unknown";
+    }
+
+    private Object get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build());
+    }
+
+    private Object send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(request.uri() + " returned " + response.statusCode());
+        }
+        return Json.parse(response.body());
+    }
+
+    private static String fileName(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? path : path.substring(slash + 1);
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,157 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Ollama start/stop/restart requests as background jobs. Jobs run one at a time in
+ * submission order, so conflicting actions never overlap and the last request wins.
+ *
+ * <p>A request joins the most recently queued job when that job has not finished and is for
+ * the same action, so several dashboards clicking at once cause a single service call. In
+ * any other case it queues a new job: start, stop, start queues three jobs, since joining
+ * the first start would leave the service stopped.
+ */
+public class OllamaController {
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final CommandRunner runner;
+    private final String serviceCommand;
+    private final ExecutorService executor;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private Job lastQueued;
+
+    /**
+     * @param serviceCommand command prefix the action is appended to, e.g. "sudo service ollama"
+     */
+    public OllamaController(CommandRunner runner, String serviceCommand) {
+        this.runner = runner;
+        this.serviceCommand = serviceCommand;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ollama-control");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Queues {@code action}, or returns the last queued job if it is unfinished and for the same action. */
+    public synchronized Job submit(String action) {
+        if (lastQueued != null && lastQueued.action.equals(action) && !lastQueued.isFinished()) {
+            return lastQueued;
+        }
+        Job job = new Job(Long.toString(nextId.incrementAndGet()), action);
+        jobs.put(job.id, job);
+        lastQueued = job;
+        trimFinished();
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    public synchronized Job getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        job.start();
+        long started = System.nanoTime();
+        int exitCode;
+        String output;
+        try {
+            CommandRunner.Result result = runner.run(CommandRunner.withArgument(serviceCommand, job.action));
+            exitCode = result.getExitCode();
+            output = result.getOutput();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = -1;
+            output = "Interrupted";
+        } catch (Exception e) {
+            exitCode = -1;
+            output = String.valueOf(e.getMessage());
+        }
+        Instrumentation.histogram("ollama " + job.action).recordSince(started, exitCode != 0);
+        System.out.println("=== OLLAMA " + job.action.toUpperCase() + " finished with exit code " + exitCode + " ===");
+        job.finish(exitCode, output);
+    }
+
+    private void trimFinished() {
+        int excess = jobs.size() - MAX_FINISHED_JOBS;
+        for (Iterator<Job> it = jobs.values().iterator(); excess > 0 && it.hasNext(); ) {
+            if (it.next().isFinished()) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    public static final class Job {
+        private final String id;
+        private final String action;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile String state = "queued";
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile int exitCode;
+        private volatile String output = "";
+
+        private Job(String id, String action) {
+            this.id = id;
+            this.action = action;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public boolean isFinished() {
+            return finishedAt != 0;
+        }
+
+        private void start() {
+            startedAt = System.currentTimeMillis();
+            state = "running";
+        }
+
+        private void finish(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.finishedAt = System.currentTimeMillis();
+            this.state = exitCode == 0 ? "succeeded" : "failed";
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(256 + output.length());
+            sb.append("{\"id\":").append(Json.quote(id))
+              .append(",\"action\":").append(Json.quote(action))
+              .append(",\"state\":").append(Json.quote(state))
+              .append(",\"createdAt\":").append(createdAt);
+            if (startedAt != 0) {
+                sb.append(",\"startedAt\":").append(startedAt);
+            }
+            if (isFinished()) {
+                sb.append(",\"finishedAt\":").append(finishedAt)
+                  .append(",\"success\":").append(exitCode == 0)
+                  .append(",\"exitCode\":").append(exitCode)
+                  .append(",\"output\":").append(Json.quote(output));
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * State of the Ollama service as last seen by {@link OllamaCollector}: the service status,
+ * the models currently loaded with their VRAM footprint, and how much GPU memory each one
+ * holds on each card when it could be attributed.
+ */
+public final class OllamaSample {
+    static final OllamaSample UNKNOWN = new OllamaSample("unknown", false, List.of(), 0, 0);
+
+    private final String status;
+    private final boolean apiAvailable;
+    private final List<LoadedModel> models;
+    private final int installedModels;
+    private final long installedBytes;
+
+    public OllamaSample(String status, boolean apiAvailable, List<LoadedModel> models,
+                        int installedModels, long installedBytes) {
+        this.status = status;
+        this.apiAvailable = apiAvailable;
+        this.models = List.copyOf(models);
+        this.installedModels = installedModels;
+        this.installedBytes = installedBytes;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isApiAvailable() {
+        return apiAvailable;
+    }
+
+    public List<LoadedModel> getModels() {
+        return models;
+    }
+
+    public int getInstalledModels() {
+        return installedModels;
+    }
+
+    public long getInstalledBytes() {
+        return installedBytes;
+    }
+
+    /**
+     * Renders the sample, resolving GPU UUIDs to the indexes and memory readings of
+     * {@code gpus}. When processes could not be matched to cards and there is a single GPU,
+     * a model's whole VRAM footprint is attributed to it and marked as estimated.
+     */
+    public String toJson(List<GpuSample> gpus) {
+        StringBuilder sb = new StringBuilder(256 + models.size() * 384);
+        sb.append("{\"status\":").append(Json.quote(status))
+          .append(",\"api\":").append(apiAvailable)
+          .append(",\"installedModels\":").append(installedModels)
+          .append(",\"installedBytes\":").append(installedBytes)
+          .append(",\"models\":[");
+        for (int i = 0; i < models.size(); i++) {
+            LoadedModel model = models.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":").append(Json.quote(model.name))
+              .append(",\"digest\":").append(Json.quote(model.digest))
+              .append(",\"parameterSize\":").append(Json.quote(model.parameterSize))
+              .append(",\"quantization\":").append(Json.quote(model.quantization))
+              .append(",\"sizeBytes\":").append(model.sizeBytes)
+              .append(",\"vramBytes\":").append(model.vramBytes)
+              .append(",\"expiresAt\":").append(Json.quote(model.expiresAt))
+              .append(",\"gpus\":[");
+            boolean first = true;
+            if (model.gpuMemoryMiB.isEmpty() && gpus.size() == 1 && model.vramBytes > 0) {
+                appendGpu(sb, gpus.get(0), Math.round(model.vramBytes / (1024.0 * 1024.0)), true);
+            } else {
+                for (Map.Entry<String, Long> entry : model.gpuMemoryMiB.entrySet()) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    GpuSample gpu = findGpu(gpus, entry.getKey());
+                    if (gpu != null) {
+                        appendGpu(sb, gpu, entry.getValue(), false);
+                    } else {
+                        sb.append("{\"uuid\":").append(Json.quote(entry.getKey()))
+                          .append(",\"memoryMiB\":").append(entry.getValue()).append('}');
+                    }
+                }
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static void appendGpu(StringBuilder sb, GpuSample gpu, long memoryMiB, boolean estimated) {
+        sb.append("{\"index\":").append(gpu.getIndex())
+          .append(",\"uuid\":").append(Json.quote(gpu.getUuid()))
+          .append(",\"memoryMiB\":").append(memoryMiB)
+          .append(",\"gpuMemoryUsedMiB\":").append(GpuSample.formatValue(gpu.getMemoryUsed()))
+          .append(",\"gpuMemoryTotalMiB\":").append(GpuSample.formatValue(gpu.getMemoryTotal()));
+        if (estimated) {
+            sb.append(",\"estimated\":true");
+        }
+        sb.append('}');
+    }
+
+    private static GpuSample findGpu(List<GpuSample> gpus, String uuid) {
+        for (GpuSample gpu : gpus) {
+            if (gpu.getUuid().equalsIgnoreCase(uuid)) return gpu;
+        }
+        return null;
+    }
+
+    public static final class LoadedModel {
+        private final String name;
+        private final String digest;
+        private final String parameterSize;
+        private final String quantization;
+        private final long sizeBytes;
+        private final long vramBytes;
+        private final String expiresAt;
+        private final Map<String, Long> gpuMemoryMiB;
+
+        /**
+         * @param gpuMemoryMiB GPU memory held by the model's runner processes, by GPU UUID
+         */
+        public LoadedModel(String name, String digest, String parameterSize, String quantization,
+                           long sizeBytes, long vramBytes, String expiresAt, Map<String, Long> gpuMemoryMiB) {
+            this.name = name;
+            this.digest = digest;
+            this.parameterSize = parameterSize;
+            this.quantization = quantization;
+            this.sizeBytes = sizeBytes;
+            this.vramBytes = vramBytes;
+            this.expiresAt = expiresAt;
+            this.gpuMemoryMiB = Collections.unmodifiableMap(new TreeMap<>(gpuMemoryMiB));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public long getVramBytes() {
+            return vramBytes;
+        }
+
+        public String getExpiresAt() {
+            return expiresAt;
+        }
+
+        public Map<String, Long> getGpuMemoryMiB() {
+            return gpuMemoryMiB;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queries every GPU with its own {@code nvidia-smi -i <index>} call, all devices at once.
+ * Collection time is that of the slowest device rather than the sum over devices, and a
+ * device that hangs (e.g. after an Xid error) only loses its own reading after
+ * {@code deviceTimeoutMillis} instead of stalling the others.
+ */
+public class ParallelNvidiaSmiSampler implements GpuCollector {
+    private static final long ENUMERATE_INTERVAL_MILLIS = 60000;
+
+    private final String command;
+    private final long deviceTimeoutMillis;
+    private final ExecutorService executor;
+    private List<Integer> devices = Collections.emptyList();
+    private long lastEnumeration;
+
+    public ParallelNvidiaSmiSampler(String command, long deviceTimeoutMillis) {
+        this.command = command;
+        this.deviceTimeoutMillis = deviceTimeoutMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "gpu-sampler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public synchronized List<GpuSample> collect() {
+        long now = System.currentTimeMillis();
+        if (devices.isEmpty() || now - lastEnumeration > ENUMERATE_INTERVAL_MILLIS) {
+            devices = enumerateDevices();
+            lastEnumeration = now;
+        }
+
+        List<CompletableFuture<GpuSample>> pending = new ArrayList<>(devices.size());
+        for (int index : devices) {
+            pending.add(CompletableFuture.supplyAsync(() -> queryDevice(index), executor));
+        }
+
+        List<GpuSample> samples = new ArrayList<>(devices.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deviceTimeoutMillis);
+        boolean missing = false;
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                GpuSample sample = pending.get(i).get(remaining, TimeUnit.NANOSECONDS);
+                if (sample != null) {
+                    samples.add(sample);
+                } else {
+                    missing = true;
+                }
+            } catch (TimeoutException e) {
+                System.err.println("GPU " + devices.get(i) + " did not answer within " + deviceTimeoutMillis + " ms");
+                missing = true;
+            } catch (ExecutionException e) {
+                missing = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (missing) {
+            // Devices may have been added or removed: enumerate again next time
+            lastEnumeration = 0;
+        }
+        return samples;
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private List<Integer> enumerateDevices() {
+        List<Integer> indexes = new ArrayList<>();
+        for (String line : run(command, "--query-gpu=index", "--format=csv,noheader,nounits")) {
+            try {
+                indexes.add(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return indexes;
+    }
+
+    private GpuSample queryDevice(int index) {
+        List<String> lines = run(command, "-i", Integer.toString(index),
+            "--query-gpu=" + GpuSample.QUERY_FIELDS, "--format=csv,noheader,nounits");
+        return lines.isEmpty() ? null : GpuSample.parse(lines.get(0));
+    }
+
+    /**
+     * Runs nvidia-smi and returns its non-empty output lines, or nothing if it failed or did
+     * not exit within the device timeout (in which case it is killed). The output is a few
+     * lines, small enough to wait in the pipe until the process has exited.
+     */
+    private List<String> run(String... commandLine) {
+        List<String> lines = new ArrayList<>();
+        Process process = null;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(commandLine);
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            process = Instrumentation.start(pb);
+            if (!process.waitFor(deviceTimeoutMillis, TimeUnit.MILLISECONDS) || process.exitValue() != 0) {
+                return lines;
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) lines.add(line);
+                }
+            }
+        } catch (Exception e) {
+            lines.clear();
+        } finally {
+            if (process != null) process.destroyForcibly();
+        }
+        return lines;
+    }
+}
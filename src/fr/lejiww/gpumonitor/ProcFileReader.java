@@ -0,0 +1,99 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Base class for readers of small text files under {@code /proc}. The file is kept open and
+ * re-read from offset 0 into a reusable buffer, and subclasses scan the raw bytes so that a
+ * sample does not allocate. Instances are not thread-safe.
+ */
+abstract class ProcFileReader {
+    private final Path path;
+    private FileChannel channel;
+    private ByteBuffer wrapper;
+    protected byte[] buffer;
+    protected int length;
+    protected int parseEnd;
+
+    protected ProcFileReader(Path path) {
+        this.path = path;
+        this.buffer = new byte[4096];
+        this.wrapper = ByteBuffer.wrap(buffer);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    protected boolean readFile() {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            length = 0;
+            long position = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    buffer = larger;
+                    wrapper = ByteBuffer.wrap(buffer);
+                }
+                wrapper.limit(buffer.length).position(length);
+                int read = channel.read(wrapper, position);
+                if (read <= 0) break;
+                length += read;
+                position += read;
+            }
+            return length > 0;
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+    }
+
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    protected int skipSpaces(int pos) {
+        while (pos < length && (buffer[pos] == ' ' || buffer[pos] == '\t')) pos++;
+        return pos;
+    }
+
+    protected int nextLine(int pos) {
+        while (pos < length && buffer[pos] != '\n') pos++;
+        return pos + 1;
+    }
+
+    protected boolean startsWith(int pos, byte[] prefix) {
+        if (pos + prefix.length > length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[pos + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /** Parses the unsigned decimal number at {@code pos}; the end offset is left in {@link #parseEnd}. */
+    protected long parseLong(int pos) {
+        long value = 0;
+        while (pos < length) {
+            byte b = buffer[pos];
+            if (b < '0' || b > '9') break;
+            value = value * 10 + (b - '0');
+            pos++;
+        }
+        parseEnd = pos;
+        return value;
+    }
+}
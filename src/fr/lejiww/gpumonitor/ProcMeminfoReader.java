@@ -0,0 +1,65 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.file.Path;
+
+/**
+ * Reads memory totals from {@code /proc/meminfo}. Values are in kB, as in the file.
+ */
+public class ProcMeminfoReader extends ProcFileReader {
+    private static final byte[] MEM_TOTAL = "MemTotal:".getBytes();
+    private static final byte[] MEM_FREE = "MemFree:".getBytes();
+    private static final byte[] MEM_AVAILABLE = "MemAvailable:".getBytes();
+    private static final byte[] BUFFERS = "Buffers:".getBytes();
+    private static final byte[] CACHED = "Cached:".getBytes();
+
+    private long totalKb;
+    private long freeKb;
+    private long availableKb;
+
+    public ProcMeminfoReader(Path procRoot) {
+        super(procRoot.resolve("meminfo"));
+    }
+
+    public boolean sample() {
+        if (!readFile()) return false;
+
+        long total = 0, free = 0, available = -1, buffers = 0, cached = 0;
+        int pos = 0;
+        while (pos < length) {
+            if (startsWith(pos, MEM_TOTAL)) {
+                total = parseLong(skipSpaces(pos + MEM_TOTAL.length));
+            } else if (startsWith(pos, MEM_FREE)) {
+                free = parseLong(skipSpaces(pos + MEM_FREE.length));
+            } else if (startsWith(pos, MEM_AVAILABLE)) {
+                available = parseLong(skipSpaces(pos + MEM_AVAILABLE.length));
+            } else if (startsWith(pos, BUFFERS)) {
+                buffers = parseLong(skipSpaces(pos + BUFFERS.length));
+            } else if (startsWith(pos, CACHED)) {
+                cached = parseLong(skipSpaces(pos + CACHED.length));
+            }
+            pos = nextLine(pos);
+        }
+
+        totalKb = total;
+        freeKb = free;
+        // Kernels before 3.14 have no MemAvailable
+        availableKb = available >= 0 ? available : Math.min(total, free + buffers + cached);
+        return total > 0;
+    }
+
+    public long getTotalKb() {
+        return totalKb;
+    }
+
+    public long getFreeKb() {
+        return freeKb;
+    }
+
+    public long getAvailableKb() {
+        return availableKb;
+    }
+
+    public long getUsedKb() {
+        return totalKb - availableKb;
+    }
+}
@@ -0,0 +1,120 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.file.Path;
+
+/**
+ * Reads the per-sample fields of one process: CPU time and start time from
+ * {@code /proc/<pid>/stat} and resident memory from {@code /proc/<pid>/status}. Both files
+ * stay open between samples, like the other {@link ProcFileReader}s. A descriptor opened on
+ * a process that has exited keeps failing rather than following a new process with the same
+ * pid, and the start time tells the two apart when the files are reopened.
+ */
+public class ProcPidReader {
+    private final StatFile stat;
+    private final StatusFile status;
+
+    public ProcPidReader(Path procRoot, int pid) {
+        Path dir = procRoot.resolve(Integer.toString(pid));
+        this.stat = new StatFile(dir.resolve("stat"));
+        this.status = new StatusFile(dir.resolve("status"));
+    }
+
+    /** Returns {@code false} when the process has exited or cannot be read. */
+    public boolean sample() {
+        if (!stat.sample()) return false;
+        // status is optional: without it the process is still reported, with no RSS
+        if (!status.sample()) status.rssKb = 0;
+        return true;
+    }
+
+    public void close() {
+        stat.close();
+        status.close();
+    }
+
+    public char getState() {
+        return stat.state;
+    }
+
+    /** User plus system CPU time, in clock ticks. */
+    public long getCpuTicks() {
+        return stat.cpuTicks;
+    }
+
+    /** Start time in clock ticks after boot; with the pid, identifies the process. */
+    public long getStartTicks() {
+        return stat.startTicks;
+    }
+
+    public long getRssKb() {
+        return status.rssKb;
+    }
+
+    private static final class StatFile extends ProcFileReader {
+        // Fields counted from the state, the first one after the command name
+        private static final int UTIME = 11;
+        private static final int STIME = 12;
+        private static final int STARTTIME = 19;
+
+        char state;
+        long cpuTicks;
+        long startTicks;
+
+        StatFile(Path path) {
+            super(path);
+        }
+
+        boolean sample() {
+            if (!readFile()) return false;
+            // The command name is in parentheses and may itself contain spaces or ')'
+            int pos = length - 1;
+            while (pos >= 0 && buffer[pos] != ')') pos--;
+            if (pos < 0) return false;
+            pos = skipSpaces(pos + 1);
+            if (pos >= length) return false;
+            state = (char) buffer[pos];
+
+            long utime = 0, stime = 0, start = -1;
+            for (int field = 0; field <= STARTTIME && pos < length; field++) {
+                if (field > 0) {
+                    pos = skipSpaces(pos);
+                    long value = parseLong(pos);
+                    if (field == UTIME) utime = value;
+                    else if (field == STIME) stime = value;
+                    else if (field == STARTTIME) start = value;
+                    pos = parseEnd;
+                }
+                while (pos < length && buffer[pos] != ' ' && buffer[pos] != '\n') pos++;
+            }
+            if (start < 0) return false;
+            cpuTicks = utime + stime;
+            startTicks = start;
+            return true;
+        }
+    }
+
+    private static final class StatusFile extends ProcFileReader {
+        private static final byte[] VM_RSS = "VmRSS:".getBytes();
+
+        long rssKb;
+
+        StatusFile(Path path) {
+            super(path);
+        }
+
+        boolean sample() {
+            if (!readFile()) return false;
+            long rss = 0;
+            int pos = 0;
+            while (pos < length) {
+                if (startsWith(pos, VM_RSS)) {
+                    rss = parseLong(skipSpaces(pos + VM_RSS.length));
+                    break;
+                }
+                pos = nextLine(pos);
+            }
+            rssKb = rss;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Computes CPU usage from {@code /proc/stat} jiffy counters. Each call to {@link #sample()}
+ * compares the counters with the previous call, for the aggregate {@code cpu} line and for
+ * every {@code cpuN} line. The first sample reports usage since boot.
+ */
+public class ProcStatReader extends ProcFileReader {
+    private static final byte[] CPU = {'c', 'p', 'u'};
+    private static final int STAT_FIELDS = 8;
+
+    // Slot 0 is the aggregate line, slot n + 1 is core n.
+    private long[] previousTotal = new long[0];
+    private long[] previousIdle = new long[0];
+    private double[] usage = new double[0];
+    private int coreCount;
+
+    public ProcStatReader(Path procRoot) {
+        super(procRoot.resolve("stat"));
+    }
+
+    public boolean sample() {
+        if (!readFile()) return false;
+
+        int cores = 0;
+        int pos = 0;
+        while (pos < length && startsWith(pos, CPU)) {
+            int slot;
+            int p = pos + CPU.length;
+            if (p < length && buffer[p] == ' ') {
+                slot = 0;
+            } else {
+                slot = (int) parseLong(p) + 1;
+                p = parseEnd;
+                cores = Math.max(cores, slot);
+            }
+            ensureSlots(slot + 1);
+
+            long total = 0;
+            long idle = 0;
+            for (int field = 0; field < STAT_FIELDS; field++) {
+                p = skipSpaces(p);
+                long value = parseLong(p);
+                p = parseEnd;
+                total += value;
+                // idle and iowait
+                if (field == 3 || field == 4) idle += value;
+            }
+
+            long deltaTotal = total - previousTotal[slot];
+            long deltaIdle = idle - previousIdle[slot];
+            usage[slot] = deltaTotal > 0 ? Math.max(0, Math.min(100, 100.0 * (deltaTotal - deltaIdle) / deltaTotal)) : 0;
+            previousTotal[slot] = total;
+            previousIdle[slot] = idle;
+
+            pos = nextLine(pos);
+        }
+        coreCount = cores;
+        return true;
+    }
+
+    private void ensureSlots(int slots) {
+        if (slots > usage.length) {
+            int size = Math.max(slots, usage.length * 2);
+            previousTotal = Arrays.copyOf(previousTotal, size);
+            previousIdle = Arrays.copyOf(previousIdle, size);
+            usage = Arrays.copyOf(usage, size);
+        }
+    }
+
+    /** Aggregate CPU usage in percent over the last sampling period. */
+    public double getUsage() {
+        return usage.length > 0 ? usage[0] : 0;
+    }
+
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    public double getCoreUsage(int core) {
+        return usage[core + 1];
+    }
+}
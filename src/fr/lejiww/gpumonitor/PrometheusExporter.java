@@ -0,0 +1,179 @@
+package fr.lejiww.gpumonitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a {@link MetricsSnapshot} in the Prometheus text exposition format (or OpenMetrics
+ * when asked for). The output is rendered once per snapshot into a reused builder and cached
+ * as bytes, so any number of scrapes of the same snapshot cost a single buffer write.
+ */
+public class PrometheusExporter {
+    public static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    public static final String OPENMETRICS_CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final double MIB = 1024.0 * 1024.0;
+    private static final double GIB = 1024.0 * 1024.0 * 1024.0;
+
+    private final StringBuilder buffer = new StringBuilder(8192);
+    private long renderedSequence = -1;
+    private byte[] text;
+    private byte[] openMetrics;
+
+    public synchronized byte[] render(MetricsSnapshot snapshot, boolean openMetricsFormat) {
+        if (snapshot.getSequence() != renderedSequence) {
+            buffer.setLength(0);
+            renderSnapshot(snapshot);
+            text = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            buffer.append("# EOF\n");
+            openMetrics = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            renderedSequence = snapshot.getSequence();
+        }
+        return openMetricsFormat ? openMetrics : text;
+    }
+
+    private void renderSnapshot(MetricsSnapshot snapshot) {
+        List<GpuSample> gpus = snapshot.getGpus();
+        SystemSample system = snapshot.getSystem();
+
+        header("gpumonitor_gpu_count", "Number of GPUs reported by the last sample");
+        sample("gpumonitor_gpu_count", gpus.size());
+
+        header("gpumonitor_gpu_temperature_celsius", "GPU core temperature");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_temperature_celsius", gpu, gpu.getTemperature());
+        header("gpumonitor_gpu_utilization_percent", "GPU utilization");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_utilization_percent", gpu, gpu.getUtilization());
+        header("gpumonitor_gpu_memory_used_bytes", "GPU memory in use");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_memory_used_bytes", gpu, gpu.getMemoryUsed() * MIB);
+        header("gpumonitor_gpu_memory_total_bytes", "GPU memory installed");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_memory_total_bytes", gpu, gpu.getMemoryTotal() * MIB);
+        header("gpumonitor_gpu_power_draw_watts", "GPU power draw");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_power_draw_watts", gpu, gpu.getPowerDraw());
+        header("gpumonitor_gpu_power_limit_watts", "GPU power limit");
+        for (GpuSample gpu : gpus) gpuSample("gpumonitor_gpu_power_limit_watts", gpu, gpu.getPowerLimit());
+
+        header("gpumonitor_cpu_usage_percent", "Aggregate CPU usage");
+        sample("gpumonitor_cpu_usage_percent", system.getCpuUsage());
+        header("gpumonitor_cpu_core_usage_percent", "Per-core CPU usage");
+        for (int core = 0; core < system.getCoreCount(); core++) {
+            buffer.append("gpumonitor_cpu_core_usage_percent{core=\"").append(core).append("\"} ");
+            value(system.getCoreUsage(core));
+        }
+        header("gpumonitor_cpu_cores", "Number of CPU cores");
+        sample("gpumonitor_cpu_cores", system.getCpuCores());
+        header("gpumonitor_cpu_temperature_celsius", "CPU temperature");
+        sample("gpumonitor_cpu_temperature_celsius", system.getCpuTemp());
+        header("gpumonitor_load_average", "System load average");
+        String[] load = system.getLoadAvg().split(" ");
+        String[] periods = {"1m", "5m", "15m"};
+        for (int i = 0; i < Math.min(load.length, periods.length); i++) {
+            buffer.append("gpumonitor_load_average{period=\"").append(periods[i]).append("\"} ").append(load[i]).append('\n');
+        }
+
+        header("gpumonitor_memory_used_bytes", "RAM in use");
+        sample("gpumonitor_memory_used_bytes", system.getRamUsed() * GIB);
+        header("gpumonitor_memory_total_bytes", "RAM installed");
+        sample("gpumonitor_memory_total_bytes", system.getRamTotal() * GIB);
+        header("gpumonitor_disk_used_bytes", "Space used on the root filesystem");
+        sample("gpumonitor_disk_used_bytes", system.getDiskUsed() * GIB);
+        header("gpumonitor_disk_total_bytes", "Size of the root filesystem");
+        sample("gpumonitor_disk_total_bytes", system.getDiskTotal() * GIB);
+
+        CgroupSample container = system.getContainer();
+        if (container != null) {
+            header("gpumonitor_container_cpu_usage_cores", "CPU time used by the monitor's cgroup, in cores");
+            sample("gpumonitor_container_cpu_usage_cores", container.getCpuCoresUsed());
+            if (container.getCpuLimitCores() > 0) {
+                header("gpumonitor_container_cpu_limit_cores", "CPU quota of the cgroup, in cores");
+                sample("gpumonitor_container_cpu_limit_cores", container.getCpuLimitCores());
+            }
+            header("gpumonitor_container_cpu_throttled_percent", "Share of scheduler periods in which the cgroup was throttled");
+            sample("gpumonitor_container_cpu_throttled_percent", container.getThrottledPercentage());
+            header("gpumonitor_container_memory_used_bytes", "Memory charged to the cgroup, page cache included");
+            sample("gpumonitor_container_memory_used_bytes", container.getMemoryUsedBytes());
+            header("gpumonitor_container_memory_working_set_bytes", "Memory charged to the cgroup minus its inactive page cache");
+            sample("gpumonitor_container_memory_working_set_bytes", container.getMemoryWorkingSetBytes());
+            if (container.getMemoryLimitBytes() > 0) {
+                header("gpumonitor_container_memory_limit_bytes", "Memory limit of the cgroup");
+                sample("gpumonitor_container_memory_limit_bytes", container.getMemoryLimitBytes());
+            }
+            header("gpumonitor_container_io_read_bytes_per_second", "Bytes read by the cgroup from block devices");
+            sample("gpumonitor_container_io_read_bytes_per_second", container.getIoReadBytesPerSecond());
+            header("gpumonitor_container_io_write_bytes_per_second", "Bytes written by the cgroup to block devices");
+            sample("gpumonitor_container_io_write_bytes_per_second", container.getIoWriteBytesPerSecond());
+        }
+
+        header("gpumonitor_ollama_up", "Whether the Ollama service is active");
+        sample("gpumonitor_ollama_up", "active".equals(snapshot.getOllamaStatus()) ? 1 : 0);
+        header("gpumonitor_ollama_model_vram_bytes", "VRAM held by a loaded Ollama model");
+        for (OllamaSample.LoadedModel model : snapshot.getOllama().getModels()) {
+            buffer.append("gpumonitor_ollama_model_vram_bytes{model=\"");
+            escapeLabel(model.getName());
+            buffer.append("\"} ");
+            value(model.getVramBytes());
+        }
+        header("gpumonitor_ollama_model_gpu_memory_bytes", "GPU memory held by a loaded Ollama model on one GPU");
+        for (OllamaSample.LoadedModel model : snapshot.getOllama().getModels()) {
+            for (Map.Entry<String, Long> gpu : model.getGpuMemoryMiB().entrySet()) {
+                buffer.append("gpumonitor_ollama_model_gpu_memory_bytes{model=\"");
+                escapeLabel(model.getName());
+                buffer.append("\",uuid=\"");
+                escapeLabel(gpu.getKey());
+                buffer.append("\"} ");
+                value(gpu.getValue() * MIB);
+            }
+        }
+
+        header("gpumonitor_system_info", "Static host information");
+        buffer.append("gpumonitor_system_info{hostname=\"");
+        escapeLabel(system.getHostname());
+        buffer.append("\",os=\"");
+        escapeLabel(system.getOsInfo());
+        buffer.append("\"} 1\n");
+
+        header("gpumonitor_snapshot_timestamp_seconds", "When the snapshot was collected");
+        sample("gpumonitor_snapshot_timestamp_seconds", snapshot.getTimestamp() / 1000.0);
+    }
+
+    private void header(String name, String help) {
+        buffer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        buffer.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private void sample(String name, double value) {
+        buffer.append(name).append(' ');
+        value(value);
+    }
+
+    private void gpuSample(String name, GpuSample gpu, double value) {
+        buffer.append(name).append("{gpu=\"").append(gpu.getIndex()).append("\",uuid=\"");
+        escapeLabel(gpu.getUuid());
+        buffer.append("\",name=\"");
+        escapeLabel(gpu.getName());
+        buffer.append("\"} ");
+        value(value);
+    }
+
+    private void value(double value) {
+        if (value == (long) value) {
+            buffer.append((long) value);
+        } else {
+            buffer.append(value);
+        }
+        buffer.append('\n');
+    }
+
+    private void escapeLabel(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                buffer.append('\\').append(c);
+            } else if (c == '\n') {
+                buffer.append("\\n");
+            } else {
+                buffer.append(c);
+            }
+        }
+    }
+}
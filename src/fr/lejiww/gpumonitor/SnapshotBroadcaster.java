@@ -0,0 +1,125 @@
+package fr.lejiww.gpumonitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes every new {@link MetricsSnapshot} to the open {@code /stream} connections as a
+ * Server-Sent Event. Each frame is encoded once and written by a small shared pool; a
+ * subscriber that is still busy with the previous frame skips the new one instead of
+ * queueing. A write that has not completed within the write timeout (a client that went
+ * away without closing, and whose send buffer is full) closes that subscriber, which
+ * frees the writer thread, so a stalled client cannot hold up the others for longer.
+ */
+public class SnapshotBroadcaster {
+    private static final int WRITER_THREADS = 4;
+    private static final long NOT_WRITING = Long.MIN_VALUE;
+
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService writers;
+
+    public SnapshotBroadcaster(int maxSubscribers, long writeTimeoutMillis) {
+        this.maxSubscribers = maxSubscribers;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(WRITER_THREADS, r -> {
+            Thread thread = new Thread(r, "sse-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static byte[] encodeEvent(MetricsSnapshot snapshot) {
+        String frame = "id: " + snapshot.getSequence() + "\n" +
+                       "event: snapshot\n" +
+                       "data: " + snapshot.toJson() + "\n\n";
+        return frame.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Registers a socket, or returns {@code null} when every place is taken. The subscriber
+     * receives nothing until {@link Subscriber#start()}, so the caller can first send the SSE
+     * response headers and the current snapshot; if that fails it calls {@link #remove}.
+     */
+    public Subscriber subscribe(Socket socket) throws IOException {
+        Subscriber subscriber = new Subscriber(socket);
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxSubscribers) {
+                return null;
+            }
+            subscribers.add(subscriber);
+        }
+        System.out.println("=== STREAM SUBSCRIBED: " + socket.getRemoteSocketAddress() + " (" + subscribers.size() + " open) ===");
+        return subscriber;
+    }
+
+    public void publish(MetricsSnapshot snapshot) {
+        if (subscribers.isEmpty()) return;
+        byte[] frame = encodeEvent(snapshot);
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long writingSince = subscriber.writingSince;
+            if (writingSince != NOT_WRITING && now - writingSince > writeTimeoutNanos) {
+                // Closing the socket makes the blocked write fail and releases its thread
+                System.out.println("=== STREAM WRITE TIMED OUT: " + subscriber.socket.getRemoteSocketAddress() + " ===");
+                remove(subscriber);
+            } else if (subscriber.busy.compareAndSet(false, true)) {
+                writers.execute(() -> subscriber.write(frame));
+            }
+        }
+    }
+
+    public void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            System.out.println("=== STREAM CLOSED: " + subscriber.socket.getRemoteSocketAddress() + " (" + subscribers.size() + " open) ===");
+        }
+        try {
+            subscriber.socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    final class Subscriber {
+        private final Socket socket;
+        private final OutputStream out;
+        // Set until start(), so that publish skips a subscriber whose headers are not sent yet
+        private final AtomicBoolean busy = new AtomicBoolean(true);
+        private volatile long writingSince = NOT_WRITING;
+
+        Subscriber(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        void start() {
+            busy.set(false);
+        }
+
+        void write(byte[] frame) {
+            writingSince = System.nanoTime();
+            try {
+                out.write(frame);
+                out.flush();
+                writingSince = NOT_WRITING;
+                busy.set(false);
+            } catch (IOException e) {
+                remove(this);
+            }
+        }
+    }
+}
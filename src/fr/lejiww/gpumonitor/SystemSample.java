@@ -0,0 +1,191 @@
+package fr.lejiww.gpumonitor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One reading of the host metrics shown in the dashboard sidebar, and of the container the
+ * monitor runs in when there is one.
+ */
+public final class SystemSample {
+    /** Every field of the JSON form, in the order they are rendered. */
+    public static final List<String> FIELDS = List.of(
+        "cpuUsage", "ramUsed", "ramTotal", "ramPercentage", "diskUsed", "diskTotal", "diskPercentage",
+        "cpuTemp", "loadAvg", "osInfo", "hostname", "uptime", "cpuCores", "cpuCoreUsage", "container");
+
+    private final double cpuUsage;
+    private final double[] coreUsage;
+    private final double ramUsed;
+    private final double ramTotal;
+    private final double ramPercentage;
+    private final double diskUsed;
+    private final double diskTotal;
+    private final double diskPercentage;
+    private final double cpuTemp;
+    private final String loadAvg;
+    private final String osInfo;
+    private final String hostname;
+    private final String uptime;
+    private final int cpuCores;
+    private final CgroupSample container;
+    private final String json;
+
+    public SystemSample(double cpuUsage, double[] coreUsage,
+                        double ramUsed, double ramTotal, double ramPercentage,
+                        double diskUsed, double diskTotal, double diskPercentage,
+                        double cpuTemp, String loadAvg, String osInfo, String hostname,
+                        String uptime, int cpuCores, CgroupSample container) {
+        this.cpuUsage = cpuUsage;
+        this.coreUsage = coreUsage.clone();
+        this.ramUsed = ramUsed;
+        this.ramTotal = ramTotal;
+        this.ramPercentage = ramPercentage;
+        this.diskUsed = diskUsed;
+        this.diskTotal = diskTotal;
+        this.diskPercentage = diskPercentage;
+        this.cpuTemp = cpuTemp;
+        this.loadAvg = loadAvg;
+        this.osInfo = osInfo;
+        this.hostname = hostname;
+        this.uptime = uptime;
+        this.cpuCores = cpuCores;
+        this.container = container;
+        this.json = formatJson();
+    }
+
+    private String formatJson() {
+        StringBuilder sb = new StringBuilder(512 + coreUsage.length * 8);
+        appendFields(sb, FIELDS);
+        return sb.toString();
+    }
+
+    /**
+     * Renders only {@code fields}, in the order given; names not in {@link #FIELDS} are skipped.
+     */
+    public String toJson(Collection<String> fields) {
+        StringBuilder sb = new StringBuilder(64 + fields.size() * 32);
+        appendFields(sb, fields);
+        return sb.toString();
+    }
+
+    private void appendFields(StringBuilder sb, Collection<String> fields) {
+        sb.append('{');
+        for (String field : fields) {
+            int mark = sb.length();
+            if (mark > 1) sb.append(',');
+            sb.append('"').append(field).append("\":");
+            if (!appendValue(sb, field)) {
+                sb.setLength(mark);
+            }
+        }
+        sb.append('}');
+    }
+
+    private boolean appendValue(StringBuilder sb, String field) {
+        switch (field) {
+            case "cpuUsage": sb.append(format("%.1f", cpuUsage)); return true;
+            case "ramUsed": Json.appendQuoted(sb, format("%.1f", ramUsed)); return true;
+            case "ramTotal": Json.appendQuoted(sb, format("%.1f", ramTotal)); return true;
+            case "ramPercentage": sb.append(format("%.1f", ramPercentage)); return true;
+            case "diskUsed": Json.appendQuoted(sb, format("%.0f", diskUsed)); return true;
+            case "diskTotal": Json.appendQuoted(sb, format("%.0f", diskTotal)); return true;
+            case "diskPercentage": sb.append(format("%.1f", diskPercentage)); return true;
+            case "cpuTemp": sb.append(format("%.0f", cpuTemp)); return true;
+            case "loadAvg": Json.appendQuoted(sb, loadAvg); return true;
+            case "osInfo": Json.appendQuoted(sb, osInfo); return true;
+            case "hostname": Json.appendQuoted(sb, hostname); return true;
+            case "uptime": Json.appendQuoted(sb, uptime); return true;
+            case "cpuCores": sb.append(cpuCores); return true;
+            case "cpuCoreUsage":
+                sb.append('[');
+                for (int core = 0; core < coreUsage.length; core++) {
+                    if (core > 0) sb.append(',');
+                    sb.append(Math.round(coreUsage[core] * 10) / 10.0);
+                }
+                sb.append(']');
+                return true;
+            case "container":
+                if (container == null) return false;
+                container.appendJson(sb);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String format(String pattern, double value) {
+        return String.format(Locale.ROOT, pattern, value);
+    }
+
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    public int getCoreCount() {
+        return coreUsage.length;
+    }
+
+    public double getCoreUsage(int core) {
+        return coreUsage[core];
+    }
+
+    /** RAM in use, in GB. */
+    public double getRamUsed() {
+        return ramUsed;
+    }
+
+    /** Installed RAM, in GB. */
+    public double getRamTotal() {
+        return ramTotal;
+    }
+
+    public double getRamPercentage() {
+        return ramPercentage;
+    }
+
+    public double getDiskUsed() {
+        return diskUsed;
+    }
+
+    public double getDiskTotal() {
+        return diskTotal;
+    }
+
+    public double getDiskPercentage() {
+        return diskPercentage;
+    }
+
+    public double getCpuTemp() {
+        return cpuTemp;
+    }
+
+    public String getLoadAvg() {
+        return loadAvg;
+    }
+
+    public String getOsInfo() {
+        return osInfo;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public String getUptime() {
+        return uptime;
+    }
+
+    public int getCpuCores() {
+        return cpuCores;
+    }
+
+    /** The container's view, or {@code null} when the monitor does not run in a cgroup v2 container. */
+    public CgroupSample getContainer() {
+        return container;
+    }
+
+    public String toJson() {
+        return json;
+    }
+}
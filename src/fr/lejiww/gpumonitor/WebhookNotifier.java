@@ -0,0 +1,95 @@
+package fr.lejiww.gpumonitor;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posts alert notifications to a webhook from its own thread. Notifications wait in a
+ * bounded queue; when the receiver is too slow for the queue to drain, new ones are dropped
+ * and counted, so a stuck receiver never holds up the sampler.
+ */
+final class WebhookNotifier {
+    private final URI uri;
+    private final Duration timeout;
+    private final BlockingQueue<String> queue;
+    private final HttpClient client;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    WebhookNotifier(URI uri, int capacity, long timeoutMillis) {
+        this.uri = uri;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+        Instrumentation.gauge("alerts.webhook.queued", queue::size);
+        Instrumentation.gauge("alerts.webhook.delivered", delivered::sum);
+        Instrumentation.gauge("alerts.webhook.failed", failed::sum);
+        Instrumentation.gauge("alerts.webhook.dropped", dropped::sum);
+    }
+
+    void start() {
+        Thread thread = new Thread(this::deliverLoop, "alert-webhook");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Queues {@code json} for delivery without blocking; returns {@code false} if it was dropped. */
+    boolean offer(String json) {
+        if (queue.offer(json)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void deliverLoop() {
+        LatencyHistogram latency = Instrumentation.histogram("alert webhook");
+        while (true) {
+            String json;
+            try {
+                json = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri)
+                        .timeout(timeout)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json))
+                        .build(),
+                    HttpResponse.BodyHandlers.discarding());
+                boolean ok = response.statusCode() / 100 == 2;
+                (ok ? delivered : failed).increment();
+                latency.recordSince(started, !ok);
+                if (!ok) {
+                    System.err.println("Alert webhook returned " + response.statusCode());
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failed.increment();
+                latency.recordSince(started, true);
+                System.err.println("Error delivering alert to " + uri + ": " + e.getMessage());
+            }
+        }
+    }
+
+    String toJson() {
+        return "{\"url\":" + Json.quote(uri.toString()) +
+            ",\"queued\":" + queue.size() +
+            ",\"delivered\":" + delivered.sum() +
+            ",\"failed\":" + failed.sum() +
+            ",\"dropped\":" + dropped.sum() + "}";
+    }
+}
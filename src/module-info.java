@@ -7,4 +7,5 @@
 module gpu_monitor {
 	requires java.desktop;
 	requires java.management;
+	requires java.net.http;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+#!/bin/sh
+# Starts a monitor on the fake nvidia-smi, systemctl and /proc of tools/nvidia-smi-stub,
+# runs LoadGenerator against it, then stops it.
+#
+#   tools/load-test/load-test.sh [jar]
+#
+# SERVER_OPTS and LOAD_OPTS are passed to the monitor and to the generator, e.g.
+#   SERVER_OPTS="-Dgpumonitor.server.mode=thread -Xmx256m" \
+#   LOAD_OPTS="-Dgpumonitor.load.browsers=1000 -Dgpumonitor.load.duration=3600000" \
+#   tools/load-test/load-test.sh
+set -e
+
+root=$(cd "$(dirname "$0")/../.." && pwd)
+jar=${1:-$root/build/libs/gpu-monitor.jar}
+stubs=$root/tools/nvidia-smi-stub
+port=${PORT:-18080}
+
+PATH=$stubs:$PATH java -Dgpumonitor.port="$port" \
+    -Dgpumonitor.procRoot="$stubs/proc" \
+    -Dgpumonitor.cgroup.dir="$stubs/cgroup" \
+    -Dgpumonitor.ollama.url=http://127.0.0.1:9 \
+    $SERVER_OPTS -jar "$jar" > "${SERVER_LOG:-/dev/null}" 2>&1 &
+server=$!
+trap 'kill $server 2>/dev/null' EXIT INT TERM
+
+# Give the server its first sample before the clients start
+sleep 3
+java -cp "$jar" -Dgpumonitor.load.url=http://127.0.0.1:"$port" $LOAD_OPTS fr.lejiww.gpumonitor.LoadGenerator
@@ -0,0 +1,129 @@
+/*
+ * Minimal stand-in for libnvidia-ml.so implementing only the NVML symbols used by
+ * NvmlCollector, for trying the "nvml" GPU mode on a machine without an NVIDIA GPU.
+ *
+ *   gcc -shared -fPIC -o libnvidia-ml-stub.so nvml_stub.c
+ *   java -Dgpumonitor.gpu.mode=nvml -Dgpumonitor.nvml.library=$PWD/libnvidia-ml-stub.so ...
+ *
+ * The number of GPUs is read from STUB_NVML_GPUS (default 2); readings vary a little on
+ * every call so that the dashboard moves. The compute processes are those of
+ * tools/nvidia-smi-stub/nvidia-smi, which match the /proc fixture next to it.
+ */
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+typedef int nvmlReturn_t;
+typedef struct { int index; } *nvmlDevice_t;
+typedef struct { unsigned int gpu; unsigned int memory; } nvmlUtilization_t;
+typedef struct { unsigned long long total; unsigned long long free; unsigned long long used; } nvmlMemory_t;
+typedef struct {
+    unsigned int pid;
+    unsigned long long usedGpuMemory;
+    unsigned int gpuInstanceId;
+    unsigned int computeInstanceId;
+} nvmlProcessInfo_t;
+
+#define NVML_SUCCESS 0
+#define NVML_ERROR_UNINITIALIZED 1
+#define NVML_ERROR_INVALID_ARGUMENT 2
+#define NVML_ERROR_INSUFFICIENT_SIZE 7
+#define MAX_DEVICES 64
+
+static struct { int index; } devices[MAX_DEVICES];
+static unsigned int device_count;
+static int initialized;
+static unsigned int tick;
+
+nvmlReturn_t nvmlInit_v2(void) {
+    const char *env = getenv("STUB_NVML_GPUS");
+    device_count = env ? (unsigned int) atoi(env) : 2;
+    if (device_count > MAX_DEVICES) device_count = MAX_DEVICES;
+    for (unsigned int i = 0; i < device_count; i++) devices[i].index = (int) i;
+    initialized = 1;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlShutdown(void) {
+    initialized = 0;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetCount_v2(unsigned int *count) {
+    if (!initialized) return NVML_ERROR_UNINITIALIZED;
+    *count = device_count;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetHandleByIndex_v2(unsigned int index, nvmlDevice_t *device) {
+    if (!initialized) return NVML_ERROR_UNINITIALIZED;
+    if (index >= device_count) return NVML_ERROR_INVALID_ARGUMENT;
+    *device = (nvmlDevice_t) &devices[index];
+    return NVML_SUCCESS;
+}
+
+static nvmlReturn_t copy_string(const char *value, char *out, unsigned int length) {
+    if (strlen(value) + 1 > length) return NVML_ERROR_INSUFFICIENT_SIZE;
+    strcpy(out, value);
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetName(nvmlDevice_t device, char *name, unsigned int length) {
+    return copy_string("NVIDIA Stub GPU", name, length);
+}
+
+nvmlReturn_t nvmlDeviceGetUUID(nvmlDevice_t device, char *uuid, unsigned int length) {
+    char value[64];
+    snprintf(value, sizeof value, "GPU-57ab0000-0000-0000-0000-%012d", device->index);
+    return copy_string(value, uuid, length);
+}
+
+nvmlReturn_t nvmlDeviceGetTemperature(nvmlDevice_t device, int sensor, unsigned int *temperature) {
+    *temperature = 40 + (device->index * 7 + tick++) % 40;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetUtilizationRates(nvmlDevice_t device, nvmlUtilization_t *utilization) {
+    utilization->gpu = (device->index * 13 + tick++) % 101;
+    utilization->memory = utilization->gpu / 2;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetMemoryInfo(nvmlDevice_t device, nvmlMemory_t *memory) {
+    memory->total = 24564ULL * 1024 * 1024;
+    memory->used = (unsigned long long) ((device->index * 1000 + tick++ * 10) % 24564) * 1024 * 1024;
+    memory->free = memory->total - memory->used;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetPowerUsage(nvmlDevice_t device, unsigned int *milliwatts) {
+    *milliwatts = 120550 + (tick++ % 100) * 1000;
+    return NVML_SUCCESS;
+}
+
+nvmlReturn_t nvmlDeviceGetEnforcedPowerLimit(nvmlDevice_t device, unsigned int *milliwatts) {
+    *milliwatts = 450000;
+    return NVML_SUCCESS;
+}
+
+static const struct { unsigned int pid; int gpu; unsigned long long mib; } apps[] = {
+    {4242, 0, 5120}, {4242, 1, 2048}, {5151, 0, 1536}, {6161, 1, 512},
+};
+
+nvmlReturn_t nvmlDeviceGetComputeRunningProcesses_v3(nvmlDevice_t device, unsigned int *count,
+                                                     nvmlProcessInfo_t *infos) {
+    unsigned int found = 0;
+    for (unsigned int i = 0; i < sizeof apps / sizeof apps[0]; i++) {
+        if (apps[i].gpu != device->index) continue;
+        if (found < *count) {
+            infos[found].pid = apps[i].pid;
+            infos[found].usedGpuMemory = apps[i].mib * 1024 * 1024;
+            infos[found].gpuInstanceId = 0xFFFFFFFF;
+            infos[found].computeInstanceId = 0xFFFFFFFF;
+        }
+        found++;
+    }
+    unsigned int capacity = *count;
+    *count = found;
+    return found > capacity ? NVML_ERROR_INSUFFICIENT_SIZE : NVML_SUCCESS;
+}
@@ -0,0 +1,57 @@
+#!/usr/bin/env python3
+"""Minimal stand-in for the Ollama HTTP API endpoints read by OllamaCollector.
+
+    python3 ollama_stub.py [port]
+    java -Dgpumonitor.ollama.url=http://127.0.0.1:<port> ...
+
+Serves /api/ps, /api/tags and /api/show with one installed model that is reported as
+loaded, using the blob path in STUB_OLLAMA_BLOB (the --model argument of its runner).
+"""
+import json
+import os
+import sys
+from datetime import datetime, timedelta, timezone
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+BLOB = os.environ.get("STUB_OLLAMA_BLOB", "/usr/share/ollama/.ollama/models/blobs/sha256-6a0746a1ec1a")
+MODEL = {
+    "name": "llama3:8b",
+    "model": "llama3:8b",
+    "size": 5137025024,
+    "digest": "365c0bd3c000a25d28ddbf732fe1c6add414de7275464c4e4d1c3b5fcb5d8ad1",
+    "details": {"family": "llama", "parameter_size": "8.0B", "quantization_level": "Q4_0"},
+}
+
+
+class Handler(BaseHTTPRequestHandler):
+    def do_GET(self):
+        if self.path == "/api/ps":
+            expires = (datetime.now(timezone.utc) + timedelta(minutes=5)).isoformat()
+            self.reply({"models": [dict(MODEL, expires_at=expires, size_vram=4831838208)]})
+        elif self.path == "/api/tags":
+            self.reply({"models": [dict(MODEL, modified_at="2024-05-01T10:00:00Z")]})
+        else:
+            self.send_error(404)
+
+    def do_POST(self):
+        self.rfile.read(int(self.headers.get("Content-Length", 0)))
+        if self.path == "/api/show":
+            self.reply({"modelfile": "# Modelfile generated by \"ollama show\"\nFROM " + BLOB + "\nTEMPLATE \"{{ .Prompt }}\"\n"})
+        else:
+            self.send_error(404)
+
+    def reply(self, body):
+        data = json.dumps(body).encode()
+        self.send_response(200)
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(data)))
+        self.end_headers()
+        self.wfile.write(data)
+
+    def log_message(self, *args):
+        pass
+
+
+if __name__ == "__main__":
+    port = int(sys.argv[1]) if len(sys.argv) > 1 else 11434
+    ThreadingHTTPServer(("127.0.0.1", port), Handler).serve_forever()
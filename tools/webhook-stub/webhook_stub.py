@@ -0,0 +1,34 @@
+#!/usr/bin/env python3
+"""Local receiver for the alert webhook, printing every notification it is sent.
+
+    python3 webhook_stub.py [port]
+    java -Dgpumonitor.alerts.webhook=http://127.0.0.1:<port>/ ...
+
+STUB_WEBHOOK_DELAY (seconds) makes it answer slowly, to watch the monitor's queue fill and
+drop notifications while sampling carries on; STUB_WEBHOOK_STATUS sets the status returned.
+"""
+import os
+import sys
+import time
+from http.server import BaseHTTPRequestHandler, HTTPServer
+
+DELAY = float(os.environ.get("STUB_WEBHOOK_DELAY", "0"))
+STATUS = int(os.environ.get("STUB_WEBHOOK_STATUS", "204"))
+
+
+class Handler(BaseHTTPRequestHandler):
+    def do_POST(self):
+        body = self.rfile.read(int(self.headers.get("Content-Length", 0)))
+        time.sleep(DELAY)
+        print(body.decode(), flush=True)
+        self.send_response(STATUS)
+        self.send_header("Content-Length", "0")
+        self.end_headers()
+
+    def log_message(self, *args):
+        pass
+
+
+if __name__ == "__main__":
+    port = int(sys.argv[1]) if len(sys.argv) > 1 else 9099
+    HTTPServer(("127.0.0.1", port), Handler).serve_forever()